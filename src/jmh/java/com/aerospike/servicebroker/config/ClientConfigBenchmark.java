@@ -0,0 +1,49 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.config;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import com.aerospike.client.Host;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ClientConfigBenchmark {
+	private static final String LINK = "{\"aerospike\":{\"network\":{\"service_port\":3100,"
+			+ "\"fabric_port\":3101,\"heartbeat_port\":3102,\"info_port\":3103}},"
+			+ "\"instances\":[{\"address\":\"10.0.16.21\"},{\"address\":\"10.0.16.22\"},"
+			+ "{\"address\":\"10.0.16.23\"}]}";
+
+	@Benchmark
+	public List<Host> seedsFromLink() {
+		return AerospikeClientConfig.getSeeds(AerospikeLink.parse(LINK), null, "localhost", 3000);
+	}
+
+	@Benchmark
+	public List<Host> seedsWithoutLink() {
+		return AerospikeClientConfig.getSeeds(AerospikeLink.parse(null), null, "localhost", 3000);
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+import com.aerospike.client.Value;
+
+/**
+ * Compares the legacy Java-serialized blob bins with the multi-bin codecs.
+ * The encode benchmarks pack every bin value into a buffer the same way the
+ * client does when it builds a write command, so they include the cost of
+ * serialization and report comparable work for both formats.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RecordCodecBenchmark {
+	private final ServiceInstanceCodec instanceCodec = new ServiceInstanceCodec();
+	private final ServiceInstanceBindingCodec bindingCodec = new ServiceInstanceBindingCodec();
+
+	private ServiceInstance instance;
+	private ServiceInstanceBinding binding;
+
+	private byte[] legacyInstanceBytes;
+	private byte[] legacyBindingBytes;
+	private Record instanceRecord;
+	private Record bindingRecord;
+
+	@Setup
+	public void setup() throws IOException {
+		instance = new ServiceInstance("8a1b7f4e-6a0c-4b3f-9d55-2a44e1f0c9b1", "aerospike-service-broker",
+				"test", "0f6b6a4c-1d2e-4c3f-8a9b-7c6d5e4f3a2b", "9e8d7c6b-5a4f-3e2d-1c0b-a9f8e7d6c5b4",
+				null, "test");
+
+		Map<String, Object> credentials = new HashMap<String, Object>();
+		credentials.put("namespace", "test");
+		credentials.put("password", "AbCdEfGhIjKlMnOp");
+		credentials.put("hostname", "10.0.16.21");
+		credentials.put("port", 3000);
+		credentials.put("hosts", new String[] {"10.0.16.21:3000", "10.0.16.22:3000", "10.0.16.23:3000"});
+		credentials.put("user", "u5f1c2d3e4b5a69788796a5b4c3d2e");
+		binding = new ServiceInstanceBinding("5f1c2d3e-4b5a-6978-8796-a5b4c3d2e1f0", instance.getServiceInstanceId(),
+				credentials, null, "3c2b1a09-8f7e-6d5c-4b3a-29180f7e6d5c");
+
+		legacyInstanceBytes = serialize(instance);
+		legacyBindingBytes = serialize(binding);
+		instanceRecord = toRecord(instanceCodec.encode(instance));
+		bindingRecord = toRecord(bindingCodec.encode(binding));
+	}
+
+	@Benchmark
+	public byte[] encodeInstanceLegacy() {
+		return pack(new Bin[] {new Bin(ServiceInstanceCodec.LEGACY_BIN, instance)});
+	}
+
+	@Benchmark
+	public byte[] encodeInstanceBins() {
+		return pack(instanceCodec.encode(instance));
+	}
+
+	@Benchmark
+	public Object decodeInstanceLegacy() throws IOException, ClassNotFoundException {
+		return deserialize(legacyInstanceBytes);
+	}
+
+	@Benchmark
+	public ServiceInstance decodeInstanceBins() {
+		return instanceCodec.decode(instanceRecord);
+	}
+
+	@Benchmark
+	public byte[] encodeBindingLegacy() {
+		return pack(new Bin[] {new Bin(ServiceInstanceBindingCodec.LEGACY_BIN, binding)});
+	}
+
+	@Benchmark
+	public byte[] encodeBindingBins() {
+		return pack(bindingCodec.encode(binding));
+	}
+
+	@Benchmark
+	public Object decodeBindingLegacy() throws IOException, ClassNotFoundException {
+		return deserialize(legacyBindingBytes);
+	}
+
+	@Benchmark
+	public ServiceInstanceBinding decodeBindingBins() {
+		return bindingCodec.decode(bindingRecord);
+	}
+
+	private static byte[] pack(Bin[] bins) {
+		int size = 0;
+		for (Bin bin : bins) {
+			size += bin.name.length() + bin.value.estimateSize();
+		}
+		byte[] buffer = new byte[size];
+		int offset = 0;
+		for (Bin bin : bins) {
+			offset += Value.get(bin.name).write(buffer, offset);
+			offset += bin.value.write(buffer, offset);
+		}
+		return buffer;
+	}
+
+	private static byte[] serialize(Object value) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(value);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+			return in.readObject();
+		}
+	}
+
+	private static Record toRecord(Bin[] bins) {
+		Map<String, Object> map = new HashMap<String, Object>();
+		for (Bin bin : bins) {
+			Object value = bin.value.getObject();
+			if (value != null) {
+				map.put(bin.name, value);
+			}
+		}
+		return new Record(map, 1, 0);
+	}
+}
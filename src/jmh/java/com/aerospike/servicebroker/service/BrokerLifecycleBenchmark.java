@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingResponse;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceResponse;
+
+import com.aerospike.servicebroker.config.AerospikeAdmissionConfig;
+import com.aerospike.servicebroker.config.AerospikeAsyncConfig;
+import com.aerospike.servicebroker.config.AerospikeClientHintsConfig;
+import com.aerospike.servicebroker.config.AerospikeCredentialPoolConfig;
+import com.aerospike.servicebroker.config.AerospikeDeprovisionConfig;
+import com.aerospike.servicebroker.config.AerospikeQuotaConfig;
+import com.aerospike.servicebroker.config.AerospikeSharedStateConfig;
+
+/**
+ * Measures the broker's bind/unbind and provision/deprovision paths against
+ * an in-memory admin store, so the numbers reflect broker overhead (request
+ * handling, codecs, caching, user/role bookkeeping) rather than the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BrokerLifecycleBenchmark {
+	private static final String SERVICE_ID = "aerospike-service-broker";
+	private static final String PLAN_ID = "test";
+	private static final String INSTANCE_ID = "8a1b7f4e-6a0c-4b3f-9d55-2a44e1f0c9b1";
+
+	@Param({"0", "10000"})
+	public int cacheEntries;
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	private AerospikeServiceInstanceService instanceService;
+	private AerospikeServiceInstanceBindingService bindingService;
+
+	@Setup
+	public void setup() throws ReflectiveOperationException {
+		AerospikeAdminService adminService = new StandInAdminService(cacheEntries, PLAN_ID);
+		instanceService = new AerospikeServiceInstanceService();
+		bindingService = new AerospikeServiceInstanceBindingService();
+		AsyncOperationService asyncService = new AsyncOperationService(new AerospikeAsyncConfig(false, 0, 0),
+				new AerospikeSharedStateConfig("benchmark", false, 600, 5000, 30000));
+		inject(instanceService, "adminService", adminService);
+		inject(instanceService, "asyncService", asyncService);
+		inject(instanceService, "deprovisionConfig", new AerospikeDeprovisionConfig(true));
+		inject(bindingService, "adminService", adminService);
+		inject(bindingService, "asyncService", asyncService);
+		CredentialPool credentialPool = new CredentialPool(new AerospikeCredentialPoolConfig(0, 0, null));
+		credentialPool.adminService = adminService;
+		inject(bindingService, "credentialPool", credentialPool);
+		// Only the cost of admission is measured, never its limits
+		AdmissionController admission = new AdmissionController(new AerospikeAdmissionConfig(0, 0, 16, 500));
+		inject(instanceService, "admission", admission);
+		inject(bindingService, "admission", admission);
+		inject(bindingService, "quotaConfig", new AerospikeQuotaConfig(0, 0, null, 20, 1000));
+		inject(bindingService, "clientHints", new AerospikeClientHintsConfig(300, null));
+
+		instanceService.createServiceInstance(createInstanceRequest(INSTANCE_ID));
+	}
+
+	@Benchmark
+	public CreateServiceInstanceBindingResponse bindUnbind() {
+		String bindingId = nextId();
+		CreateServiceInstanceBindingResponse response = bindingService.createServiceInstanceBinding(
+				new CreateServiceInstanceBindingRequest(SERVICE_ID, PLAN_ID, "app-guid",
+						Collections.singletonMap("app_guid", (Object) "app-guid"), null)
+				.withServiceInstanceId(INSTANCE_ID)
+				.withBindingId(bindingId));
+		bindingService.deleteServiceInstanceBinding(
+				new DeleteServiceInstanceBindingRequest(INSTANCE_ID, bindingId, SERVICE_ID, PLAN_ID, null));
+		return response;
+	}
+
+	@Benchmark
+	public DeleteServiceInstanceResponse provisionDeprovision() {
+		String instanceId = nextId();
+		instanceService.createServiceInstance(createInstanceRequest(instanceId));
+		return instanceService.deleteServiceInstance(
+				new DeleteServiceInstanceRequest(instanceId, SERVICE_ID, PLAN_ID, null));
+	}
+
+	private String nextId() {
+		return String.format("5f1c2d3e-4b5a-6978-8796-%012x", sequence.incrementAndGet());
+	}
+
+	private static CreateServiceInstanceRequest createInstanceRequest(String instanceId) {
+		return new CreateServiceInstanceRequest(SERVICE_ID, PLAN_ID, "org-guid", "space-guid")
+				.withServiceInstanceId(instanceId);
+	}
+
+	private static void inject(Object target, String name, Object value) throws ReflectiveOperationException {
+		Field field = target.getClass().getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(target, value);
+	}
+}
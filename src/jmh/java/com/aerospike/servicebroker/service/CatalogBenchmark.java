@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.cloud.servicebroker.model.Catalog;
+import org.springframework.cloud.servicebroker.model.ServiceDefinition;
+
+import com.aerospike.servicebroker.config.AerospikeCatalogConfig;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CatalogBenchmark {
+	@Param({"1", "16"})
+	public int namespaces;
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private AerospikeCatalogService catalogService;
+
+	@Setup
+	public void setup() {
+		String[] names = new String[namespaces];
+		for (int i = 0; i < namespaces; i++) {
+			names[i] = "ns" + i;
+		}
+		catalogService = new AerospikeCatalogService(new AerospikeCatalogConfig("aerospike-service-broker",
+				"aerospike", "Aerospike Enterprise Edition Managed Service"));
+		catalogService.adminService = new StandInAdminService(0, names);
+	}
+
+	@Benchmark
+	public Catalog getCatalog() {
+		return catalogService.getCatalog();
+	}
+
+	@Benchmark
+	public byte[] getCatalogJson() throws JsonProcessingException {
+		return mapper.writeValueAsBytes(catalogService.getCatalog());
+	}
+
+	@Benchmark
+	public ServiceDefinition getServiceDefinition() {
+		return catalogService.getServiceDefinition("aerospike-service-broker");
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.IAerospikeClient;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.admin.Privilege;
+import com.aerospike.client.cluster.Node;
+import com.aerospike.client.policy.GenerationPolicy;
+import com.aerospike.client.policy.RecordExistsAction;
+import com.aerospike.client.policy.WritePolicy;
+
+/**
+ * An in-memory stand-in for the subset of IAerospikeClient that
+ * AerospikeAdminService uses for records, users and roles. Any other client
+ * call fails with UnsupportedOperationException so a benchmark cannot
+ * silently measure something that does not reach this store.
+ */
+public final class InMemoryAerospikeClient implements InvocationHandler {
+	private final Map<Key, StoredRecord> records = new ConcurrentHashMap<>();
+	private final Map<String, List<Privilege>> roles = new ConcurrentHashMap<>();
+	private final Map<String, List<String>> users = new ConcurrentHashMap<>();
+
+	private InMemoryAerospikeClient() {
+	}
+
+	public static IAerospikeClient create() {
+		return (IAerospikeClient) Proxy.newProxyInstance(IAerospikeClient.class.getClassLoader(),
+				new Class<?>[] {IAerospikeClient.class}, new InMemoryAerospikeClient());
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public Object invoke(Object proxy, Method method, Object[] args) {
+		switch (method.getName() + "/" + method.getParameterCount()) {
+		case "hashCode/0":
+			return System.identityHashCode(proxy);
+		case "equals/1":
+			return proxy == args[0];
+		case "toString/0":
+			return "InMemoryAerospikeClient";
+		case "isConnected/0":
+			return true;
+		case "close/0":
+			return null;
+		case "getNodes/0":
+			return new Node[0];
+		case "get/2":
+			return get((Key) args[1]);
+		case "exists/2":
+			if (args[1] instanceof Key) {
+				return records.containsKey(args[1]);
+			}
+			break;
+		case "put/3":
+			write((WritePolicy) args[0], (Key) args[1], toOperations((Bin[]) args[2]));
+			return null;
+		case "operate/3":
+			return write((WritePolicy) args[0], (Key) args[1], (Operation[]) args[2]);
+		case "delete/2":
+			return records.remove(args[1]) != null;
+		case "createRole/3":
+			if (roles.putIfAbsent((String) args[1], (List<Privilege>) args[2]) != null) {
+				throw new AerospikeException(ResultCode.ROLE_ALREADY_EXISTS);
+			}
+			return null;
+		case "dropRole/2":
+			if (roles.remove(args[1]) == null) {
+				throw new AerospikeException(ResultCode.INVALID_ROLE);
+			}
+			return null;
+		case "createUser/4":
+			if (users.putIfAbsent((String) args[1], (List<String>) args[3]) != null) {
+				throw new AerospikeException(ResultCode.USER_ALREADY_EXISTS);
+			}
+			return null;
+		case "dropUser/2":
+			if (users.remove(args[1]) == null) {
+				throw new AerospikeException(ResultCode.INVALID_USER);
+			}
+			return null;
+		default:
+			break;
+		}
+		throw new UnsupportedOperationException(method.toString());
+	}
+
+	private Record get(Key key) {
+		StoredRecord stored = records.get(key);
+		return stored == null ? null : new Record(new HashMap<>(stored.bins), stored.generation, 0);
+	}
+
+	private Record write(WritePolicy policy, Key key, Operation[] operations) {
+		StoredRecord result = records.compute(key, (k, existing) -> {
+			check(policy, existing);
+			StoredRecord updated = new StoredRecord();
+			if (existing != null && !replaces(policy)) {
+				updated.bins.putAll(existing.bins);
+			}
+			updated.generation = existing == null ? 1 : existing.generation + 1;
+			for (Operation operation : operations) {
+				if (operation.type == Operation.Type.WRITE) {
+					Object value = operation.value.getObject();
+					if (value == null) {
+						updated.bins.remove(operation.binName);
+					} else {
+						updated.bins.put(operation.binName, value);
+					}
+				}
+			}
+			return updated;
+		});
+		return new Record(new HashMap<>(), result.generation, 0);
+	}
+
+	private static void check(WritePolicy policy, StoredRecord existing) {
+		if (policy == null) {
+			return;
+		}
+		if (existing != null && policy.recordExistsAction == RecordExistsAction.CREATE_ONLY) {
+			throw new AerospikeException(ResultCode.KEY_EXISTS_ERROR);
+		}
+		if (existing == null && (policy.recordExistsAction == RecordExistsAction.UPDATE_ONLY
+				|| policy.recordExistsAction == RecordExistsAction.REPLACE_ONLY)) {
+			throw new AerospikeException(ResultCode.KEY_NOT_FOUND_ERROR);
+		}
+		if (policy.generationPolicy == GenerationPolicy.EXPECT_GEN_EQUAL
+				&& (existing == null || existing.generation != policy.generation)) {
+			throw new AerospikeException(ResultCode.GENERATION_ERROR);
+		}
+	}
+
+	private static boolean replaces(WritePolicy policy) {
+		return policy != null && (policy.recordExistsAction == RecordExistsAction.REPLACE
+				|| policy.recordExistsAction == RecordExistsAction.REPLACE_ONLY);
+	}
+
+	private static Operation[] toOperations(Bin[] bins) {
+		Operation[] operations = new Operation[bins.length];
+		for (int i = 0; i < bins.length; i++) {
+			operations[i] = Operation.put(bins[i]);
+		}
+		return operations;
+	}
+
+	private static final class StoredRecord {
+		final Map<String, Object> bins = new HashMap<>();
+		int generation;
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.aerospike.client.Host;
+import com.aerospike.client.cluster.Node;
+import com.aerospike.servicebroker.config.AerospikeCacheConfig;
+import com.aerospike.servicebroker.config.AerospikeClientConfig;
+import com.aerospike.servicebroker.config.AerospikePolicyConfig;
+import com.aerospike.servicebroker.config.AerospikeRetryConfig;
+import com.aerospike.servicebroker.model.ClusterNode;
+import com.aerospike.servicebroker.model.ClusterTopology;
+import com.aerospike.servicebroker.model.ServiceInstanceBinding;
+
+/**
+ * An AerospikeAdminService backed by {@link InMemoryAerospikeClient}, with a
+ * fixed three-node topology and namespace list in place of the Info calls
+ * that need a real cluster.
+ */
+public class StandInAdminService extends AerospikeAdminService {
+	private static final String[] HOSTS = {"10.0.16.21:3000", "10.0.16.22:3000", "10.0.16.23:3000"};
+	// Stands in for the client's node array, which only changes with the cluster
+	private static final Node[] NODES = new Node[HOSTS.length];
+
+	private final Map<String, Map<String, String>> namespaceInfo = new HashMap<>();
+	private final ClusterTopology topology;
+	private final TopologySnapshot seeds = new TopologySnapshot(nodes -> {
+		Host[] hosts = new Host[HOSTS.length];
+		for (int i = 0; i < hosts.length; i++) {
+			hosts[i] = new Host(HOSTS[i].split(":")[0], 3000);
+		}
+		return hosts;
+	});
+
+	public StandInAdminService(int cacheEntries, String... namespaces) {
+		super(new AerospikeClientConfig("localhost", 3000, "enterprise", "cf_admin", "cf_admin", "cf_admin",
+				"none", "none", "aerospike", null, null, false,
+				new AerospikePolicyConfig(1000, 50, 1, 55, 1000, 500, 1500, 2, 1000, 3000, 1, 20, 1000, 3000, 0, 100, 200, 2)),
+				new AerospikeCacheConfig(cacheEntries, 60),
+				new AerospikeRetryConfig(5, 50, 2000),
+				InMemoryAerospikeClient.create());
+		for (String ns : namespaces) {
+			Map<String, String> info = new HashMap<>();
+			info.put("storage-engine", "device");
+			info.put("memory-size", "4294967296");
+			info.put("effective_replication_factor", "2");
+			namespaceInfo.put(ns, info);
+		}
+		// One node per rack, as in a foundation spread over three zones
+		List<ClusterNode> nodes = new ArrayList<>();
+		for (int i = 0; i < HOSTS.length; i++) {
+			Map<String, Integer> rackIds = new HashMap<>();
+			for (String ns : namespaces) {
+				rackIds.put(ns, i + 1);
+			}
+			nodes.add(new ClusterNode("BB90" + i, HOSTS[i].split(":")[0], 3000, null, null, 0, rackIds));
+		}
+		this.topology = new ClusterTopology("benchmark", nodes);
+	}
+
+	@Override
+	public Map<String, Map<String, String>> getNamespaceInfo() {
+		return namespaceInfo;
+	}
+
+	/*
+	 * The in-memory client has no secondary indexes. The benchmarks never
+	 * bind to the instances they deprovision, so the query would be empty.
+	 */
+	@Override
+	public List<ServiceInstanceBinding> getServiceBindingsForInstance(String serviceInstanceId) {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public ClusterTopology getTopology() {
+		return topology;
+	}
+
+	@Override
+	public List<Host> getSeeds() {
+		return seeds.seeds(NODES);
+	}
+}
@@ -16,13 +16,31 @@
  */
 package com.aerospike.servicebroker;
 
-import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import com.aerospike.servicebroker.service.AdminStateTransfer;
 
 @SpringBootApplication
 public class AerospikeServiceBrokerApplication {
+	static final String SCHEDULING_PROPERTY = "aerospike_scheduling_enabled";
 
 	public static void main(String[] args) {
-		SpringApplication.run(AerospikeServiceBrokerApplication.class, args);
+		SpringApplicationBuilder builder = new SpringApplicationBuilder(AerospikeServiceBrokerApplication.class);
+		if (AdminStateTransfer.isRequested(args)) {
+			// A state transfer only needs the admin service: no HTTP, and no
+			// background jobs writing to the cluster while it runs
+			builder.web(false).properties(SCHEDULING_PROPERTY + "=false");
+		}
+		builder.run(args);
+	}
+
+	@Configuration
+	@EnableScheduling
+	@ConditionalOnProperty(name = SCHEDULING_PROPERTY, matchIfMissing = true)
+	static class SchedulingConfiguration {
 	}
 }
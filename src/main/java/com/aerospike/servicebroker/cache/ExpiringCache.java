@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A bounded, in-process cache whose entries expire a fixed time after they
+ * were written. When the cache is full the least recently used entry is
+ * evicted. A cache created with a maximum size of zero stores nothing and
+ * reports every lookup as a miss.
+ */
+public class ExpiringCache<K, V> {
+	private final int maxEntries;
+	private final long ttlNanos;
+	private final LongSupplier clock;
+	private final Map<K, Entry<V>> entries;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public ExpiringCache(int maxEntries, long ttl, TimeUnit unit) {
+		this(maxEntries, ttl, unit, System::nanoTime);
+	}
+
+	ExpiringCache(int maxEntries, long ttl, TimeUnit unit, LongSupplier clock) {
+		this.maxEntries = Math.max(0, maxEntries);
+		this.ttlNanos = unit.toNanos(ttl);
+		this.clock = clock;
+		this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+				return size() > ExpiringCache.this.maxEntries;
+			}
+		};
+	}
+
+	public boolean isEnabled() {
+		return maxEntries > 0 && ttlNanos > 0;
+	}
+
+	/**
+	 * Return the cached value for a key, or null if it is absent or has expired.
+	 */
+	public V get(K key) {
+		if (!isEnabled()) {
+			misses.incrementAndGet();
+			return null;
+		}
+		synchronized (entries) {
+			Entry<V> entry = entries.get(key);
+			if (entry != null) {
+				if (clock.getAsLong() - entry.writtenAt < ttlNanos) {
+					hits.incrementAndGet();
+					return entry.value;
+				}
+				entries.remove(key);
+			}
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	public void put(K key, V value) {
+		if (!isEnabled() || value == null) {
+			return;
+		}
+		synchronized (entries) {
+			entries.put(key, new Entry<V>(value, clock.getAsLong()));
+		}
+	}
+
+	public void invalidate(K key) {
+		synchronized (entries) {
+			entries.remove(key);
+		}
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	private static final class Entry<V> {
+		final V value;
+		final long writtenAt;
+
+		Entry(V value, long writtenAt) {
+			this.value = value;
+			this.writtenAt = writtenAt;
+		}
+	}
+}
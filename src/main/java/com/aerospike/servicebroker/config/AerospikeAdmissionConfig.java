@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.config;
+
+/**
+ * Limits on lifecycle requests. Provisions and binds are rate limited per
+ * organization with a token bucket of orgBurst tokens refilled at
+ * orgRatePerSecond; a rate of 0 turns the limit off. Security commands run
+ * for requests are capped at maxConcurrentSecurityCommands at a time
+ * across all organizations; 0 turns the cap off.
+ */
+public class AerospikeAdmissionConfig {
+	public final double orgRatePerSecond;
+	public final int orgBurst;
+	public final int maxConcurrentSecurityCommands;
+	public final long securityPermitWaitMs;
+
+	public AerospikeAdmissionConfig(double orgRatePerSecond, int orgBurst, int maxConcurrentSecurityCommands,
+			long securityPermitWaitMs) {
+		this.orgRatePerSecond = orgRatePerSecond;
+		this.orgBurst = orgBurst;
+		this.maxConcurrentSecurityCommands = maxConcurrentSecurityCommands;
+		this.securityPermitWaitMs = securityPermitWaitMs;
+	}
+}
@@ -16,15 +16,22 @@
  */
 package com.aerospike.servicebroker.config;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
-import java.io.IOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.aerospike.client.Host;
 
 public class AerospikeClientConfig {
+	private static final Logger logger = LoggerFactory.getLogger(AerospikeClientConfig.class);
+
 	public final String hostname;
 	public final int port;
+	public final List<Host> seeds;
+	public final AerospikeLink link;
 	public final String licenseType;
 	public final String adminNamespace;
 	public final String user;
@@ -32,15 +39,18 @@ public class AerospikeClientConfig {
 	public final String licenseUser;
 	public final String licensePassword;
 	public final String serviceName;
+	public final boolean lazyStartup;
+	public final AerospikePolicyConfig policies;
 
 	public AerospikeClientConfig(String hostname, int port, String licenseType, 
 			String adminNamespace, String user, String password, String licenseUser,
 			String licensePassword, String serviceName, String jsonNodeProperties,
-			String aerospikeNodeHost) {
-
-		this.hostname = aerospikeNodeHost == null ? hostname : aerospikeNodeHost;
+			String aerospikeNodeHost, boolean lazyStartup, AerospikePolicyConfig policies) {
 
-		this.port = getPortFromLink(jsonNodeProperties, port);
+		this.link = AerospikeLink.parse(jsonNodeProperties);
+		this.seeds = getSeeds(link, aerospikeNodeHost, hostname, port);
+		this.hostname = seeds.get(0).name;
+		this.port = seeds.get(0).port;
 		this.licenseType = licenseType;
 		this.adminNamespace = adminNamespace;
 		this.user = user;
@@ -48,37 +58,52 @@ public class AerospikeClientConfig {
 		this.licenseUser = licenseUser;
 		this.licensePassword = licensePassword;
 		this.serviceName = serviceName;
+		this.lazyStartup = lazyStartup;
+		this.policies = policies;
 	}
 
 	/*
-	Our bosh deploy script on CF **may** push properties from a link which will look like:
-	{
-		"aerospike": {
-			"network": {
-				"service_port": ####,
-				"fabric_port": ####,
-				"heartbeat_port": ####,
-				"info_port": ####
+	 * An explicitly set node host wins. Otherwise every node address the link
+	 * lists is a seed, and without any the configured db host is used. Either
+	 * host may be a comma-separated list of host or host:port entries. Hosts
+	 * without a port use the link's service port, or the configured port if
+	 * the link has none. With TLS set up in the link, seeds use its TLS name
+	 * and port.
+	 */
+	static List<Host> getSeeds(AerospikeLink link, String nodeHost, String hosts, int defaultPort) {
+		int servicePort = link.servicePort > 0 ? link.servicePort : defaultPort;
+		List<Host> seeds = new ArrayList<>();
+		if (nodeHost != null && !nodeHost.trim().isEmpty()) {
+			if (!link.addresses.isEmpty()) {
+				logger.info("aerospike_node_host is set, seeding with " + nodeHost + " instead of the "
+						+ link.addresses.size() + " nodes of the link");
 			}
+			hosts = nodeHost;
+		} else if (!link.addresses.isEmpty()) {
+			for (String address : link.addresses) {
+				seeds.add(seed(link, address, servicePort));
+			}
+			return Collections.unmodifiableList(seeds);
 		}
-	}
-	If the link was null, this is a noop.
-	*/
-	private int getPortFromLink(String jsonNodeProperties, int defaultPort) {
-		if (jsonNodeProperties == null) {
-			return defaultPort;
+		for (String entry : hosts.split(",")) {
+			entry = entry.trim();
+			if (entry.isEmpty()) {
+				continue;
+			}
+			int colon = entry.lastIndexOf(':');
+			if (colon > 0 && entry.indexOf(':') == colon) {
+				seeds.add(seed(link, entry.substring(0, colon), Integer.parseInt(entry.substring(colon + 1))));
+			} else {
+				seeds.add(seed(link, entry, servicePort));
+			}
 		}
-		ObjectMapper mapper = new ObjectMapper();
-		try {
-			JsonNode aerospikeNode = mapper.readTree(jsonNodeProperties);
-			return aerospikeNode.get("aerospike").get("network").get("service_port").intValue();
-		} catch(IOException e) {
-			e.printStackTrace();
-			return defaultPort;
-		} catch(NullPointerException e) {
-			/* If any of these intermediate nodes don't exist, we'll get this error */
-			e.printStackTrace();
-			return defaultPort;
+		if (seeds.isEmpty()) {
+			throw new IllegalArgumentException("No Aerospike host configured");
 		}
+		return Collections.unmodifiableList(seeds);
+	}
+
+	private static Host seed(AerospikeLink link, String address, int port) {
+		return link.isTlsEnabled() ? new Host(address, link.tlsName, link.tlsPort) : new Host(address, port);
 	}
 }
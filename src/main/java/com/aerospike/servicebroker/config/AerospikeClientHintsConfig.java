@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.config;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Client settings recommended to apps in their binding credentials. Plans
+ * can be given their own max connections per node as a comma-separated list
+ * of plan:maxConnsPerNode entries; other plans use the default.
+ */
+public class AerospikeClientHintsConfig {
+	public final int defaultMaxConnsPerNode;
+	private final Map<String, Integer> plans;
+
+	public AerospikeClientHintsConfig(int defaultMaxConnsPerNode, String planHints) {
+		this.defaultMaxConnsPerNode = defaultMaxConnsPerNode;
+		this.plans = parse(planHints);
+	}
+
+	public int getMaxConnsPerNode(String plan) {
+		return plans.getOrDefault(plan, defaultMaxConnsPerNode);
+	}
+
+	static Map<String, Integer> parse(String planHints) {
+		if (planHints == null || planHints.trim().isEmpty()) {
+			return Collections.emptyMap();
+		}
+		Map<String, Integer> result = new HashMap<>();
+		for (String entry : planHints.split(",")) {
+			String[] parts = entry.trim().split(":");
+			if (parts.length != 2) {
+				throw new IllegalArgumentException("Invalid client hint entry '" + entry
+						+ "', expected plan:maxConnsPerNode");
+			}
+			result.put(parts[0], Integer.parseInt(parts[1]));
+		}
+		return result;
+	}
+}
@@ -16,6 +16,7 @@
  */
 package com.aerospike.servicebroker.config;
 import java.net.UnknownHostException;
+import java.util.UUID;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -62,14 +63,230 @@ public class AerospikeConfig {
 	@Value("${aerospike_node_properties:#{null}}")
 	private String aerospikeNodeProps;
 
+	@Value("${aerospike_lazy_startup:false}")
+	private boolean lazyStartup;
+
+	// Defaults favour failing fast over waiting: the broker's requests are
+	// small, and Cloud Controller retries a failed broker call
+	@Value("${aerospike_client_connect_timeout_ms:1000}")
+	private int connectTimeout;
+
+	@Value("${aerospike_client_max_conns_per_node:50}")
+	private int maxConnsPerNode;
+
+	@Value("${aerospike_client_conn_pools_per_node:1}")
+	private int connPoolsPerNode;
+
+	@Value("${aerospike_client_max_socket_idle_seconds:55}")
+	private int maxSocketIdle;
+
+	@Value("${aerospike_client_tend_interval_ms:1000}")
+	private int tendInterval;
+
+	@Value("${aerospike_read_socket_timeout_ms:500}")
+	private int readSocketTimeout;
+
+	@Value("${aerospike_read_total_timeout_ms:1500}")
+	private int readTotalTimeout;
+
+	@Value("${aerospike_read_max_retries:2}")
+	private int readMaxRetries;
+
+	@Value("${aerospike_write_socket_timeout_ms:1000}")
+	private int writeSocketTimeout;
+
+	@Value("${aerospike_write_total_timeout_ms:3000}")
+	private int writeTotalTimeout;
+
+	@Value("${aerospike_write_max_retries:1}")
+	private int writeMaxRetries;
+
+	@Value("${aerospike_sleep_between_retries_ms:20}")
+	private int sleepBetweenRetries;
+
+	@Value("${aerospike_info_timeout_ms:1000}")
+	private int infoTimeout;
+
+	@Value("${aerospike_admin_timeout_ms:3000}")
+	private int adminTimeout;
+
+	@Value("${aerospike_client_event_loops:0}")
+	private int eventLoops;
+
+	@Value("${aerospike_client_max_commands_in_process:100}")
+	private int maxCommandsInProcess;
+
+	@Value("${aerospike_batch_size:200}")
+	private int batchSize;
+
+	@Value("${aerospike_max_concurrent_bulk_requests:2}")
+	private int maxConcurrentBulkRequests;
+
+	@Value("${aerospike_cache_max_entries:10000}")
+	private int cacheMaxEntries;
+
+	@Value("${aerospike_cache_ttl_seconds:60}")
+	private int cacheTtlSeconds;
+
+	@Value("${aerospike_retry_max_attempts:5}")
+	private int retryMaxAttempts;
+
+	@Value("${aerospike_retry_initial_backoff_ms:50}")
+	private long retryInitialBackoffMs;
+
+	@Value("${aerospike_retry_max_backoff_ms:2000}")
+	private long retryMaxBackoffMs;
+
+	@Value("${aerospike_deprovision_cascade_bindings:true}")
+	private boolean cascadeBindings;
+
+	@Value("${aerospike_orphan_gc_enabled:false}")
+	private boolean orphanGcEnabled;
+
+	@Value("${aerospike_orphan_gc_batch_size:20}")
+	private int orphanGcBatchSize;
+
+	@Value("${aerospike_orphan_gc_batch_pause_ms:1000}")
+	private long orphanGcBatchPauseMs;
+
+	@Value("${aerospike_credential_pool_size:0}")
+	private int credentialPoolSize;
+
+	@Value("${aerospike_credential_pool_low_water:0}")
+	private int credentialPoolLowWater;
+
+	@Value("${aerospike_credential_pool_plans:}")
+	private String credentialPoolPlans;
+
+	@Value("${aerospike_read_quota:0}")
+	private int readQuota;
+
+	@Value("${aerospike_write_quota:0}")
+	private int writeQuota;
+
+	@Value("${aerospike_plan_quotas:}")
+	private String planQuotas;
+
+	@Value("${aerospike_quota_sync_batch_size:20}")
+	private int quotaSyncBatchSize;
+
+	@Value("${aerospike_quota_sync_batch_pause_ms:1000}")
+	private long quotaSyncBatchPauseMs;
+
+	@Value("${aerospike_client_hint_max_conns_per_node:300}")
+	private int hintMaxConnsPerNode;
+
+	@Value("${aerospike_plan_client_hints:}")
+	private String planClientHints;
+
+	@Value("${aerospike_async_operations:false}")
+	private boolean asyncOperations;
+
+	@Value("${aerospike_async_threads:4}")
+	private int asyncThreads;
+
+	@Value("${aerospike_async_queue_capacity:100}")
+	private int asyncQueueCapacity;
+
+	@Value("${aerospike_org_rate_per_second:0}")
+	private double orgRatePerSecond;
+
+	@Value("${aerospike_org_burst:20}")
+	private int orgBurst;
+
+	@Value("${aerospike_max_concurrent_security_commands:16}")
+	private int maxConcurrentSecurityCommands;
+
+	@Value("${aerospike_security_permit_wait_ms:500}")
+	private long securityPermitWaitMs;
+
+	// Set by Cloud Foundry for each app instance
+	@Value("${CF_INSTANCE_GUID:}")
+	private String instanceGuid;
+
+	@Value("${aerospike_change_log_enabled:false}")
+	private boolean changeLogEnabled;
+
+	@Value("${aerospike_change_log_ttl_seconds:600}")
+	private int changeLogTtlSeconds;
+
+	@Value("${aerospike_clock_skew_ms:5000}")
+	private long clockSkewMs;
+
+	@Value("${aerospike_operation_lease_ms:30000}")
+	private long operationLeaseMs;
+
 	@Bean
 	public AerospikeClientConfig aerospikeClientConfig() throws UnknownHostException {
 		return new AerospikeClientConfig(hostname, port, licenseType, adminNamespace, user, 
-				password, licenseUser, licensePassword, serviceName, aerospikeNodeProps, aerospikeNodeHost);
+				password, licenseUser, licensePassword, serviceName, aerospikeNodeProps, aerospikeNodeHost,
+				lazyStartup, aerospikePolicyConfig());
+	}
+
+	@Bean
+	public AerospikePolicyConfig aerospikePolicyConfig() {
+		return new AerospikePolicyConfig(connectTimeout, maxConnsPerNode, connPoolsPerNode, maxSocketIdle,
+				tendInterval, readSocketTimeout, readTotalTimeout, readMaxRetries, writeSocketTimeout,
+				writeTotalTimeout, writeMaxRetries, sleepBetweenRetries, infoTimeout, adminTimeout, eventLoops,
+				maxCommandsInProcess, batchSize, maxConcurrentBulkRequests);
 	}
 
 	@Bean
 	public AerospikeCatalogConfig aerospikeCatalogConfig() {
 		return new AerospikeCatalogConfig(serviceId, serviceName, serviceDescription);
 	}
+
+	@Bean
+	public AerospikeCacheConfig aerospikeCacheConfig() {
+		return new AerospikeCacheConfig(cacheMaxEntries, cacheTtlSeconds);
+	}
+
+	@Bean
+	public AerospikeRetryConfig aerospikeRetryConfig() {
+		return new AerospikeRetryConfig(retryMaxAttempts, retryInitialBackoffMs, retryMaxBackoffMs);
+	}
+
+	@Bean
+	public AerospikeDeprovisionConfig aerospikeDeprovisionConfig() {
+		return new AerospikeDeprovisionConfig(cascadeBindings);
+	}
+
+	@Bean
+	public AerospikeOrphanCollectorConfig aerospikeOrphanCollectorConfig() {
+		return new AerospikeOrphanCollectorConfig(orphanGcEnabled, orphanGcBatchSize, orphanGcBatchPauseMs);
+	}
+
+	@Bean
+	public AerospikeCredentialPoolConfig aerospikeCredentialPoolConfig() {
+		return new AerospikeCredentialPoolConfig(credentialPoolSize, credentialPoolLowWater, credentialPoolPlans);
+	}
+
+	@Bean
+	public AerospikeClientHintsConfig aerospikeClientHintsConfig() {
+		return new AerospikeClientHintsConfig(hintMaxConnsPerNode, planClientHints);
+	}
+
+	@Bean
+	public AerospikeQuotaConfig aerospikeQuotaConfig() {
+		return new AerospikeQuotaConfig(readQuota, writeQuota, planQuotas, quotaSyncBatchSize,
+				quotaSyncBatchPauseMs);
+	}
+
+	@Bean
+	public AerospikeAsyncConfig aerospikeAsyncConfig() {
+		return new AerospikeAsyncConfig(asyncOperations, asyncThreads, asyncQueueCapacity);
+	}
+
+	@Bean
+	public AerospikeAdmissionConfig aerospikeAdmissionConfig() {
+		return new AerospikeAdmissionConfig(orgRatePerSecond, orgBurst, maxConcurrentSecurityCommands,
+				securityPermitWaitMs);
+	}
+
+	@Bean
+	public AerospikeSharedStateConfig aerospikeSharedStateConfig() {
+		String replicaId = instanceGuid.isEmpty() ? UUID.randomUUID().toString() : instanceGuid;
+		return new AerospikeSharedStateConfig(replicaId, changeLogEnabled, changeLogTtlSeconds, clockSkewMs,
+				operationLeaseMs);
+	}
 }
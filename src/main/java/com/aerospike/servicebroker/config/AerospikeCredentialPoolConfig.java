@@ -0,0 +1,68 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.config;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sizes of the pre-created credential pool, per plan (namespace). Plans can
+ * be given their own size and low-water mark as a comma-separated list of
+ * plan:size:lowWater entries; other plans use the defaults. A size of 0
+ * disables the pool for a plan.
+ */
+public class AerospikeCredentialPoolConfig {
+	public final int defaultSize;
+	public final int defaultLowWater;
+	private final Map<String, int[]> plans;
+
+	public AerospikeCredentialPoolConfig(int defaultSize, int defaultLowWater, String planSizes) {
+		this.defaultSize = defaultSize;
+		this.defaultLowWater = defaultLowWater;
+		this.plans = parse(planSizes);
+	}
+
+	public int getSize(String plan) {
+		int[] sizes = plans.get(plan);
+		return sizes == null ? defaultSize : sizes[0];
+	}
+
+	/**
+	 * The pool for a plan is refilled once it holds fewer entries than this.
+	 */
+	public int getLowWater(String plan) {
+		int[] sizes = plans.get(plan);
+		return sizes == null ? defaultLowWater : sizes[1];
+	}
+
+	static Map<String, int[]> parse(String planSizes) {
+		if (planSizes == null || planSizes.trim().isEmpty()) {
+			return Collections.emptyMap();
+		}
+		Map<String, int[]> result = new HashMap<>();
+		for (String entry : planSizes.split(",")) {
+			String[] parts = entry.trim().split(":");
+			if (parts.length != 3) {
+				throw new IllegalArgumentException("Invalid credential pool entry '" + entry
+						+ "', expected plan:size:lowWater");
+			}
+			result.put(parts[0], new int[] {Integer.parseInt(parts[1]), Integer.parseInt(parts[2])});
+		}
+		return result;
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.config;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The Aerospike node properties our BOSH deploy script **may** push from the
+ * aerospike link. They look like:
+ * <pre>
+ * {
+ *   "aerospike": {
+ *     "network": {
+ *       "service_port": ####,
+ *       "fabric_port": ####,
+ *       "heartbeat_port": ####,
+ *       "info_port": ####,
+ *       "tls": {
+ *         "name": "...",
+ *         "service_port": ####
+ *       }
+ *     }
+ *   },
+ *   "instances": [
+ *     { "address": "..." }
+ *   ]
+ * }
+ * </pre>
+ * Every part is optional. Values that are missing are left at 0, null or
+ * empty.
+ */
+public class AerospikeLink {
+	public static final AerospikeLink EMPTY = new AerospikeLink(Collections.emptyList(), 0, 0, null, 0);
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final Logger logger = LoggerFactory.getLogger(AerospikeLink.class);
+
+	public final List<String> addresses;
+	public final int servicePort;
+	public final int infoPort;
+	public final String tlsName;
+	public final int tlsPort;
+
+	public AerospikeLink(List<String> addresses, int servicePort, int infoPort, String tlsName, int tlsPort) {
+		this.addresses = Collections.unmodifiableList(addresses);
+		this.servicePort = servicePort;
+		this.infoPort = infoPort;
+		this.tlsName = tlsName;
+		this.tlsPort = tlsPort;
+	}
+
+	/**
+	 * Nodes are only connected to over TLS if the link names the certificate
+	 * and the port to use.
+	 */
+	public boolean isTlsEnabled() {
+		return tlsName != null && tlsPort > 0;
+	}
+
+	/**
+	 * Parse the link properties. A null link, or one that cannot be parsed,
+	 * gives {@link #EMPTY}.
+	 */
+	public static AerospikeLink parse(String json) {
+		if (json == null) {
+			return EMPTY;
+		}
+		JsonNode root;
+		try {
+			root = MAPPER.readTree(json);
+		} catch (IOException e) {
+			logger.warn("Ignoring unparseable aerospike node properties: " + e.getMessage());
+			return EMPTY;
+		}
+		if (root == null) {
+			return EMPTY;
+		}
+		JsonNode network = root.path("aerospike").path("network");
+		List<String> addresses = new ArrayList<>();
+		for (JsonNode instance : root.path("instances")) {
+			String address = instance.path("address").asText(null);
+			if (address != null && !address.isEmpty()) {
+				addresses.add(address);
+			}
+		}
+		JsonNode tls = network.path("tls");
+		return new AerospikeLink(addresses, network.path("service_port").asInt(0), network.path("info_port").asInt(0),
+				tls.path("name").asText(null), tls.path("service_port").asInt(0));
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.config;
+
+import com.aerospike.client.async.EventLoops;
+import com.aerospike.client.async.EventPolicy;
+import com.aerospike.client.async.NioEventLoops;
+import com.aerospike.client.policy.AdminPolicy;
+import com.aerospike.client.policy.BatchPolicy;
+import com.aerospike.client.policy.ClientPolicy;
+import com.aerospike.client.policy.InfoPolicy;
+import com.aerospike.client.policy.Policy;
+import com.aerospike.client.policy.QueryPolicy;
+import com.aerospike.client.policy.ScanPolicy;
+import com.aerospike.client.policy.WritePolicy;
+
+/**
+ * Connection pool, tend and per-command timeout settings for the broker's
+ * AerospikeClient. All times are in milliseconds, except maxSocketIdle which
+ * is in seconds.
+ */
+public class AerospikePolicyConfig {
+	public final int connectTimeout;
+	public final int maxConnsPerNode;
+	public final int connPoolsPerNode;
+	public final int maxSocketIdle;
+	public final int tendInterval;
+	public final int readSocketTimeout;
+	public final int readTotalTimeout;
+	public final int readMaxRetries;
+	public final int writeSocketTimeout;
+	public final int writeTotalTimeout;
+	public final int writeMaxRetries;
+	public final int sleepBetweenRetries;
+	public final int infoTimeout;
+	public final int adminTimeout;
+	public final int eventLoops;
+	public final int maxCommandsInProcess;
+	public final int batchSize;
+	public final int maxConcurrentBulkRequests;
+
+	public AerospikePolicyConfig(int connectTimeout, int maxConnsPerNode, int connPoolsPerNode, int maxSocketIdle,
+			int tendInterval, int readSocketTimeout, int readTotalTimeout, int readMaxRetries,
+			int writeSocketTimeout, int writeTotalTimeout, int writeMaxRetries, int sleepBetweenRetries,
+			int infoTimeout, int adminTimeout, int eventLoops, int maxCommandsInProcess, int batchSize,
+			int maxConcurrentBulkRequests) {
+		this.connectTimeout = connectTimeout;
+		this.maxConnsPerNode = maxConnsPerNode;
+		this.connPoolsPerNode = connPoolsPerNode;
+		this.maxSocketIdle = maxSocketIdle;
+		this.tendInterval = tendInterval;
+		this.readSocketTimeout = readSocketTimeout;
+		this.readTotalTimeout = readTotalTimeout;
+		this.readMaxRetries = readMaxRetries;
+		this.writeSocketTimeout = writeSocketTimeout;
+		this.writeTotalTimeout = writeTotalTimeout;
+		this.writeMaxRetries = writeMaxRetries;
+		this.sleepBetweenRetries = sleepBetweenRetries;
+		this.infoTimeout = infoTimeout;
+		this.adminTimeout = adminTimeout;
+		this.eventLoops = eventLoops;
+		this.maxCommandsInProcess = maxCommandsInProcess;
+		this.batchSize = batchSize;
+		this.maxConcurrentBulkRequests = maxConcurrentBulkRequests;
+	}
+
+	/**
+	 * NIO event loops for the client's async API, or null if async commands
+	 * are disabled (eventLoops is 0). maxCommandsInProcess bounds the commands
+	 * in flight per loop; excess commands are queued by the client.
+	 */
+	public EventLoops createEventLoops() {
+		if (eventLoops <= 0) {
+			return null;
+		}
+		EventPolicy policy = new EventPolicy();
+		policy.maxCommandsInProcess = maxCommandsInProcess;
+		return new NioEventLoops(policy, eventLoops);
+	}
+
+	/**
+	 * A ClientPolicy with the pool and tend settings applied, and the read,
+	 * write and info policies installed as the client's defaults.
+	 */
+	public ClientPolicy clientPolicy() {
+		ClientPolicy policy = new ClientPolicy();
+		policy.timeout = connectTimeout;
+		policy.maxConnsPerNode = maxConnsPerNode;
+		policy.connPoolsPerNode = connPoolsPerNode;
+		policy.maxSocketIdle = maxSocketIdle;
+		policy.tendInterval = tendInterval;
+		policy.readPolicyDefault = readPolicy();
+		policy.writePolicyDefault = writePolicy();
+		policy.infoPolicyDefault = infoPolicy();
+		return policy;
+	}
+
+	public Policy readPolicy() {
+		Policy policy = new Policy();
+		policy.socketTimeout = readSocketTimeout;
+		policy.totalTimeout = readTotalTimeout;
+		policy.maxRetries = readMaxRetries;
+		policy.sleepBetweenRetries = sleepBetweenRetries;
+		return policy;
+	}
+
+	public WritePolicy writePolicy() {
+		WritePolicy policy = new WritePolicy();
+		policy.socketTimeout = writeSocketTimeout;
+		policy.totalTimeout = writeTotalTimeout;
+		policy.maxRetries = writeMaxRetries;
+		policy.sleepBetweenRetries = sleepBetweenRetries;
+		return policy;
+	}
+
+	/**
+	 * Batch reads use the read timeouts and query one node at a time.
+	 */
+	public BatchPolicy batchPolicy() {
+		BatchPolicy policy = new BatchPolicy();
+		policy.socketTimeout = readSocketTimeout;
+		policy.totalTimeout = readTotalTimeout;
+		policy.maxRetries = readMaxRetries;
+		policy.sleepBetweenRetries = sleepBetweenRetries;
+		policy.maxConcurrentThreads = 1;
+		return policy;
+	}
+
+	/**
+	 * Scans visit one node at a time and have no total timeout, since their
+	 * length depends on the number of records.
+	 */
+	public ScanPolicy scanPolicy() {
+		ScanPolicy policy = new ScanPolicy();
+		policy.socketTimeout = readSocketTimeout;
+		policy.totalTimeout = 0;
+		policy.maxRetries = 0;
+		policy.concurrentNodes = false;
+		policy.maxConcurrentNodes = 1;
+		policy.includeBinData = true;
+		return policy;
+	}
+
+	/**
+	 * Like scans, queries have no total timeout.
+	 */
+	public QueryPolicy queryPolicy() {
+		QueryPolicy policy = new QueryPolicy();
+		policy.socketTimeout = readSocketTimeout;
+		policy.totalTimeout = 0;
+		policy.maxRetries = 0;
+		return policy;
+	}
+
+	public InfoPolicy infoPolicy() {
+		InfoPolicy policy = new InfoPolicy();
+		policy.timeout = infoTimeout;
+		return policy;
+	}
+
+	public AdminPolicy adminPolicy() {
+		AdminPolicy policy = new AdminPolicy();
+		policy.timeout = adminTimeout;
+		return policy;
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.config;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read and write quotas (transactions per second) for the roles of each
+ * plan (namespace). Plans can be given their own quotas as a
+ * comma-separated list of plan:readQuota:writeQuota entries; other plans use
+ * the defaults. A quota of 0 means unlimited. Changes to a plan's quotas are
+ * pushed to the roles of its existing bindings in batches of syncBatchSize,
+ * pausing syncBatchPauseMs in between.
+ */
+public class AerospikeQuotaConfig {
+	public final int defaultReadQuota;
+	public final int defaultWriteQuota;
+	public final int syncBatchSize;
+	public final long syncBatchPauseMs;
+	private final Map<String, int[]> plans;
+
+	public AerospikeQuotaConfig(int defaultReadQuota, int defaultWriteQuota, String planQuotas,
+			int syncBatchSize, long syncBatchPauseMs) {
+		this.defaultReadQuota = defaultReadQuota;
+		this.defaultWriteQuota = defaultWriteQuota;
+		this.plans = parse(planQuotas);
+		this.syncBatchSize = syncBatchSize;
+		this.syncBatchPauseMs = syncBatchPauseMs;
+	}
+
+	public int getReadQuota(String plan) {
+		int[] quotas = plans.get(plan);
+		return quotas == null ? defaultReadQuota : quotas[0];
+	}
+
+	public int getWriteQuota(String plan) {
+		int[] quotas = plans.get(plan);
+		return quotas == null ? defaultWriteQuota : quotas[1];
+	}
+
+	/**
+	 * The quota a binding gets: the plan's, lowered to what the binding asked
+	 * for if it asked for less.
+	 */
+	public static int effective(int planQuota, int requested) {
+		if (requested <= 0) {
+			return planQuota;
+		}
+		return planQuota <= 0 ? requested : Math.min(planQuota, requested);
+	}
+
+	static Map<String, int[]> parse(String planQuotas) {
+		if (planQuotas == null || planQuotas.trim().isEmpty()) {
+			return Collections.emptyMap();
+		}
+		Map<String, int[]> result = new HashMap<>();
+		for (String entry : planQuotas.split(",")) {
+			String[] parts = entry.trim().split(":");
+			if (parts.length != 3) {
+				throw new IllegalArgumentException("Invalid quota entry '" + entry
+						+ "', expected plan:readQuota:writeQuota");
+			}
+			result.put(parts[0], new int[] {Integer.parseInt(parts[1]), Integer.parseInt(parts[2])});
+		}
+		return result;
+	}
+}
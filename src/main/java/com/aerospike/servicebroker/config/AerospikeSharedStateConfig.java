@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.config;
+
+/**
+ * Settings for running several broker replicas against the same admin
+ * namespace. The replica id tells the replicas' change log entries and
+ * operation leases apart.
+ */
+public class AerospikeSharedStateConfig {
+	public final String replicaId;
+	public final boolean changeLogEnabled;
+	public final int changeLogTtlSeconds;
+	public final long clockSkewMs;
+	public final long operationLeaseMs;
+
+	public AerospikeSharedStateConfig(String replicaId, boolean changeLogEnabled, int changeLogTtlSeconds,
+			long clockSkewMs, long operationLeaseMs) {
+		this.replicaId = replicaId;
+		this.changeLogEnabled = changeLogEnabled;
+		this.changeLogTtlSeconds = changeLogTtlSeconds;
+		this.clockSkewMs = clockSkewMs;
+		this.operationLeaseMs = operationLeaseMs;
+	}
+}
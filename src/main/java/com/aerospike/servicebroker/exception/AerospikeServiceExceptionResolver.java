@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.exception;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.servicebroker.model.ErrorMessage;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.ModelAndView;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Turns AerospikeServiceUnavailableException into a 503 response with a
+ * Retry-After header, or a 429 response for AerospikeRateLimitedException. The broker controllers handle every Exception
+ * themselves and answer 500, so this resolver is ordered ahead of the
+ * controllers' own exception handlers.
+ */
+@Component
+public class AerospikeServiceExceptionResolver implements HandlerExceptionResolver, Ordered {
+	private Logger logger = LoggerFactory.getLogger(AerospikeServiceExceptionResolver.class);
+
+	@Autowired(required = false)
+	ObjectMapper objectMapper = new ObjectMapper();
+
+	@Override
+	public int getOrder() {
+		return Ordered.HIGHEST_PRECEDENCE + 1;
+	}
+
+	@Override
+	public ModelAndView resolveException(HttpServletRequest request, HttpServletResponse response, Object handler,
+			Exception ex) {
+		if (!(ex instanceof AerospikeServiceUnavailableException)) {
+			return null;
+		}
+		AerospikeServiceUnavailableException unavailable = (AerospikeServiceUnavailableException) ex;
+		logger.info("Service unavailable: " + ex.getMessage());
+		try {
+			response.setStatus(ex instanceof AerospikeRateLimitedException ? HttpStatus.TOO_MANY_REQUESTS.value()
+					: HttpStatus.SERVICE_UNAVAILABLE.value());
+			response.setHeader(HttpHeaders.RETRY_AFTER, Integer.toString(unavailable.getRetryAfterSeconds()));
+			response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+			objectMapper.writeValue(response.getOutputStream(), new ErrorMessage(ex.getMessage()));
+		} catch (IOException e) {
+			logger.error("Could not write service unavailable response: " + e.getMessage());
+		}
+		return new ModelAndView();
+	}
+}
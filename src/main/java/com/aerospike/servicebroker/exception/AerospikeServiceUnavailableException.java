@@ -0,0 +1,39 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.exception;
+
+/**
+ * Thrown when a request cannot be served right now but may succeed if
+ * retried, for example while the broker is still connecting to the cluster.
+ * Reported to the caller as 503 Service Unavailable with a Retry-After
+ * header.
+ */
+public class AerospikeServiceUnavailableException extends AerospikeServiceException {
+
+	private static final long serialVersionUID = 4417269023587415623L;
+
+	private final int retryAfterSeconds;
+
+	public AerospikeServiceUnavailableException(String message, int retryAfterSeconds) {
+		super(message);
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	public int getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+}
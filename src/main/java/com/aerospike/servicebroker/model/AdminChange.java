@@ -0,0 +1,63 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.model;
+
+/**
+ * An entry in the change log that broker replicas share through the admin
+ * namespace: the instance or binding with the given id was written or
+ * deleted by the replica named in origin.
+ */
+public class AdminChange {
+	public enum Kind {
+		SERVICE,
+		BINDING
+	}
+
+	private final String changeId;
+	private final Kind kind;
+	private final String id;
+	private final String origin;
+	private final long timestamp;
+
+	public AdminChange(String changeId, Kind kind, String id, String origin, long timestamp) {
+		this.changeId = changeId;
+		this.kind = kind;
+		this.id = id;
+		this.origin = origin;
+		this.timestamp = timestamp;
+	}
+
+	public String getChangeId() {
+		return changeId;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getOrigin() {
+		return origin;
+	}
+
+	public long getTimestamp() {
+		return timestamp;
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.model;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+
+public class AdminChangeCodec implements RecordCodec<AdminChange> {
+	public static final String CHANGE_ID_BIN = "changeId";
+	public static final String KIND_BIN = "kind";
+	public static final String ID_BIN = "id";
+	public static final String ORIGIN_BIN = "origin";
+	public static final String TIMESTAMP_BIN = "ts";
+
+	@Override
+	public Bin[] encode(AdminChange change) {
+		return new Bin[] {
+				new Bin(CHANGE_ID_BIN, change.getChangeId()),
+				new Bin(KIND_BIN, change.getKind().name()),
+				new Bin(ID_BIN, change.getId()),
+				new Bin(ORIGIN_BIN, change.getOrigin()),
+				new Bin(TIMESTAMP_BIN, change.getTimestamp())
+		};
+	}
+
+	@Override
+	public AdminChange decode(Record record) {
+		return new AdminChange(
+				record.getString(CHANGE_ID_BIN),
+				AdminChange.Kind.valueOf(record.getString(KIND_BIN)),
+				record.getString(ID_BIN),
+				record.getString(ORIGIN_BIN),
+				record.getLong(TIMESTAMP_BIN));
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.model;
+
+import org.springframework.cloud.servicebroker.model.OperationState;
+
+/**
+ * The state of a lifecycle operation that runs in the background, keyed by
+ * the id of the service instance or binding it acts on. While in progress
+ * the operation is leased to the broker replica running it, until
+ * leaseExpires (epoch milliseconds).
+ */
+public class AsyncOperation {
+	public enum Type {
+		CREATE_BINDING,
+		DELETE_BINDING,
+		DELETE_INSTANCE
+	}
+
+	private final String id;
+	private final Type type;
+	private final OperationState state;
+	private final String description;
+	private final String owner;
+	private final long leaseExpires;
+
+	public AsyncOperation(String id, Type type, OperationState state, String description) {
+		this(id, type, state, description, null, 0);
+	}
+
+	public AsyncOperation(String id, Type type, OperationState state, String description, String owner,
+			long leaseExpires) {
+		this.id = id;
+		this.type = type;
+		this.state = state;
+		this.description = description;
+		this.owner = owner;
+		this.leaseExpires = leaseExpires;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public OperationState getState() {
+		return state;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public String getOwner() {
+		return owner;
+	}
+
+	public long getLeaseExpires() {
+		return leaseExpires;
+	}
+
+	public AsyncOperation withState(OperationState state, String description) {
+		return new AsyncOperation(this.id, this.type, state, description, this.owner, this.leaseExpires);
+	}
+
+	public AsyncOperation withLease(String owner, long leaseExpires) {
+		return new AsyncOperation(this.id, this.type, this.state, this.description, owner, leaseExpires);
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.model;
+
+import org.springframework.cloud.servicebroker.model.OperationState;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+
+public class AsyncOperationCodec implements RecordCodec<AsyncOperation> {
+	public static final String ID_BIN = "id";
+	public static final String TYPE_BIN = "type";
+	public static final String STATE_BIN = "state";
+	public static final String DESCRIPTION_BIN = "description";
+	public static final String OWNER_BIN = "owner";
+	public static final String LEASE_BIN = "leaseExpires";
+
+	@Override
+	public Bin[] encode(AsyncOperation operation) {
+		return new Bin[] {
+				new Bin(ID_BIN, operation.getId()),
+				new Bin(TYPE_BIN, operation.getType().name()),
+				new Bin(STATE_BIN, operation.getState().name()),
+				operation.getDescription() == null ? Bin.asNull(DESCRIPTION_BIN)
+						: new Bin(DESCRIPTION_BIN, operation.getDescription()),
+				operation.getOwner() == null ? Bin.asNull(OWNER_BIN) : new Bin(OWNER_BIN, operation.getOwner()),
+				new Bin(LEASE_BIN, operation.getLeaseExpires())
+		};
+	}
+
+	@Override
+	public AsyncOperation decode(Record record) {
+		return new AsyncOperation(
+				record.getString(ID_BIN),
+				AsyncOperation.Type.valueOf(record.getString(TYPE_BIN)),
+				OperationState.valueOf(record.getString(STATE_BIN)),
+				record.getString(DESCRIPTION_BIN),
+				record.getString(OWNER_BIN),
+				record.getLong(LEASE_BIN));
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.model;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * How apps can reach one cluster node: its service address, the TLS name to
+ * verify it by, the alternate address it publishes for clients outside its
+ * network, and the rack it belongs to in each namespace.
+ */
+public class ClusterNode {
+	private final String name;
+	private final String host;
+	private final int port;
+	private final String tlsName;
+	private final String alternateHost;
+	private final int alternatePort;
+	private final Map<String, Integer> rackIds;
+
+	public ClusterNode(String name, String host, int port, String tlsName, String alternateHost, int alternatePort,
+			Map<String, Integer> rackIds) {
+		this.name = name;
+		this.host = host;
+		this.port = port;
+		this.tlsName = tlsName;
+		this.alternateHost = alternateHost;
+		this.alternatePort = alternatePort;
+		this.rackIds = Collections.unmodifiableMap(rackIds);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getHost() {
+		return host;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public String getTlsName() {
+		return tlsName;
+	}
+
+	/**
+	 * @return the alternate address, or null if the node publishes none
+	 */
+	public String getAlternateHost() {
+		return alternateHost;
+	}
+
+	public int getAlternatePort() {
+		return alternatePort;
+	}
+
+	/**
+	 * @return the node's rack in a namespace, or null if not known
+	 */
+	public Integer getRackId(String namespace) {
+		return rackIds.get(namespace);
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The cluster's name and nodes as last read from the cluster.
+ */
+public class ClusterTopology {
+	public static final ClusterTopology EMPTY = new ClusterTopology(null, Collections.emptyList());
+
+	private final String clusterName;
+	private final List<ClusterNode> nodes;
+
+	public ClusterTopology(String clusterName, List<ClusterNode> nodes) {
+		this.clusterName = clusterName;
+		this.nodes = Collections.unmodifiableList(nodes);
+	}
+
+	/**
+	 * @return the cluster name, or null if the cluster has none
+	 */
+	public String getClusterName() {
+		return clusterName;
+	}
+
+	public List<ClusterNode> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * A namespace is rack aware once its nodes are spread over more than the
+	 * default rack 0.
+	 */
+	public boolean isRackAware(String namespace) {
+		for (ClusterNode node : nodes) {
+			Integer rackId = node.getRackId(namespace);
+			if (rackId != null && rackId != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.model;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+
+public class PlanQuotasCodec implements RecordCodec<PlanQuotas> {
+	public static final String NAMESPACE_BIN = "namespace";
+	public static final String READ_QUOTA_BIN = "readQuota";
+	public static final String WRITE_QUOTA_BIN = "writeQuota";
+
+	@Override
+	public Bin[] encode(PlanQuotas quotas) {
+		return new Bin[] {
+				new Bin(NAMESPACE_BIN, quotas.getNamespace()),
+				new Bin(READ_QUOTA_BIN, quotas.getReadQuota()),
+				new Bin(WRITE_QUOTA_BIN, quotas.getWriteQuota())
+		};
+	}
+
+	@Override
+	public PlanQuotas decode(Record record) {
+		return new PlanQuotas(
+				record.getString(NAMESPACE_BIN),
+				RecordCodec.getInt(record, READ_QUOTA_BIN),
+				RecordCodec.getInt(record, WRITE_QUOTA_BIN));
+	}
+}
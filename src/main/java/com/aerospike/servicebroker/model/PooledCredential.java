@@ -0,0 +1,51 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.model;
+
+/**
+ * A database user and its role, created ahead of time for a namespace so
+ * that a bind can hand it out without running security commands.
+ */
+public class PooledCredential {
+	private final String namespace;
+	private final String userName;
+	private final String roleName;
+	private final String password;
+
+	public PooledCredential(String namespace, String userName, String roleName, String password) {
+		this.namespace = namespace;
+		this.userName = userName;
+		this.roleName = roleName;
+		this.password = password;
+	}
+
+	public String getNamespace() {
+		return namespace;
+	}
+
+	public String getUserName() {
+		return userName;
+	}
+
+	public String getRoleName() {
+		return roleName;
+	}
+
+	public String getPassword() {
+		return password;
+	}
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.model;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+
+public class PooledCredentialCodec implements RecordCodec<PooledCredential> {
+	public static final String NAMESPACE_BIN = "namespace";
+	public static final String USER_BIN = "user";
+	public static final String ROLE_BIN = "role";
+	public static final String PASSWORD_BIN = "password";
+
+	@Override
+	public Bin[] encode(PooledCredential credential) {
+		return new Bin[] {
+				new Bin(NAMESPACE_BIN, credential.getNamespace()),
+				new Bin(USER_BIN, credential.getUserName()),
+				new Bin(ROLE_BIN, credential.getRoleName()),
+				new Bin(PASSWORD_BIN, credential.getPassword())
+		};
+	}
+
+	@Override
+	public PooledCredential decode(Record record) {
+		return new PooledCredential(
+				record.getString(NAMESPACE_BIN),
+				record.getString(USER_BIN),
+				record.getString(ROLE_BIN),
+				record.getString(PASSWORD_BIN));
+	}
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.model;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+
+/**
+ * Maps a broker model object to and from the bins of an Aerospike record.
+ */
+public interface RecordCodec<T> {
+
+	/**
+	 * Encode a value as the complete set of bins for its record. Fields that
+	 * are null are returned as null bins so that stale values are removed
+	 * when an existing record is rewritten.
+	 */
+	Bin[] encode(T value);
+
+	/**
+	 * Decode a record previously written by {@link #encode(Object)} or by the
+	 * legacy single-bin, Java-serialized format.
+	 */
+	T decode(Record record);
+
+	/**
+	 * Read an integer bin, or 0 if it is not set. The server returns integer
+	 * bins as longs, but records built elsewhere may hold other Number types,
+	 * which Record.getInt does not accept.
+	 */
+	static int getInt(Record record, String name) {
+		Object value = record.getValue(name);
+		return value == null ? 0 : ((Number) value).intValue();
+	}
+}
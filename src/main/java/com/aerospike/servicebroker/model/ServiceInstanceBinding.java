@@ -30,6 +30,9 @@ public class ServiceInstanceBinding implements Serializable {
 	private String serviceInstanceId;
 	private Map<String,Object> credentials = new HashMap<>();
 	private String appGuid;
+	private String roleName;
+	private int readQuota;
+	private int writeQuota;
 	
 	public ServiceInstanceBinding(CreateServiceInstanceBindingRequest request) {
 		this.id = request.getBindingId();
@@ -39,11 +42,21 @@ public class ServiceInstanceBinding implements Serializable {
 	
 	public ServiceInstanceBinding(String id, String serviceInstanceId, Map<String, Object> credentials,
 			String syslogDrainUrl, String appGuid) {
+		this(id, serviceInstanceId, credentials, syslogDrainUrl, appGuid, null);
+	}
+
+	/**
+	 * @param roleName the database role created for or assigned to this
+	 * binding, if it does not follow the name derived from the binding id
+	 */
+	public ServiceInstanceBinding(String id, String serviceInstanceId, Map<String, Object> credentials,
+			String syslogDrainUrl, String appGuid, String roleName) {
 		this.id = id;
 		this.serviceInstanceId = serviceInstanceId;
 		setCredentials(credentials);
 
 		this.appGuid = appGuid;
+		this.roleName = roleName;
 	}
 
 	public String getId() {
@@ -69,4 +82,26 @@ public class ServiceInstanceBinding implements Serializable {
 	public String getAppGuid() {
 		return appGuid;
 	}
+
+	public String getRoleName() {
+		return roleName;
+	}
+
+	/**
+	 * @param readQuota the read quota asked for at bind time, 0 for the plan's
+	 * @param writeQuota the write quota asked for at bind time, 0 for the plan's
+	 */
+	public ServiceInstanceBinding withQuotas(int readQuota, int writeQuota) {
+		this.readQuota = readQuota;
+		this.writeQuota = writeQuota;
+		return this;
+	}
+
+	public int getReadQuota() {
+		return readQuota;
+	}
+
+	public int getWriteQuota() {
+		return writeQuota;
+	}
 }
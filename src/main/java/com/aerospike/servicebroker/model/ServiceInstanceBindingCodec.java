@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+
+/**
+ * Stores a ServiceInstanceBinding as string bins plus a native map bin for
+ * the credentials. Array values in the credentials (such as the host list)
+ * are stored as lists so that the map never falls back to a Java-serialized
+ * blob. Records in the legacy format, with the whole object serialized in
+ * the "binding" bin, are still decoded.
+ */
+public class ServiceInstanceBindingCodec implements RecordCodec<ServiceInstanceBinding> {
+	public static final String LEGACY_BIN = "binding";
+
+	public static final String ID_BIN = "id";
+	public static final String INSTANCE_ID_BIN = "instanceId";
+	public static final String APP_GUID_BIN = "appGuid";
+	public static final String CREDENTIALS_BIN = "credentials";
+	public static final String ROLE_NAME_BIN = "roleName";
+	public static final String READ_QUOTA_BIN = "readQuota";
+	public static final String WRITE_QUOTA_BIN = "writeQuota";
+
+	@Override
+	public Bin[] encode(ServiceInstanceBinding binding) {
+		return new Bin[] {
+				stringBin(ID_BIN, binding.getId()),
+				stringBin(INSTANCE_ID_BIN, binding.getServiceInstanceId()),
+				stringBin(APP_GUID_BIN, binding.getAppGuid()),
+				new Bin(CREDENTIALS_BIN, toNativeMap(binding.getCredentials())),
+				stringBin(ROLE_NAME_BIN, binding.getRoleName()),
+				new Bin(READ_QUOTA_BIN, binding.getReadQuota()),
+				new Bin(WRITE_QUOTA_BIN, binding.getWriteQuota()),
+				Bin.asNull(LEGACY_BIN)
+		};
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public ServiceInstanceBinding decode(Record record) {
+		Object legacy = record.getValue(LEGACY_BIN);
+		if (legacy instanceof ServiceInstanceBinding) {
+			return (ServiceInstanceBinding) legacy;
+		}
+		Map<String, Object> credentials = null;
+		Map<?, ?> stored = record.getMap(CREDENTIALS_BIN);
+		if (stored != null) {
+			credentials = new HashMap<String, Object>((Map<String, Object>) stored);
+		}
+		return new ServiceInstanceBinding(
+				record.getString(ID_BIN),
+				record.getString(INSTANCE_ID_BIN),
+				credentials,
+				null,
+				record.getString(APP_GUID_BIN),
+				record.getString(ROLE_NAME_BIN))
+				.withQuotas(RecordCodec.getInt(record, READ_QUOTA_BIN),
+						RecordCodec.getInt(record, WRITE_QUOTA_BIN));
+	}
+
+	private static Map<String, Object> toNativeMap(Map<String, Object> credentials) {
+		Map<String, Object> result = new HashMap<String, Object>();
+		for (Map.Entry<String, Object> entry : credentials.entrySet()) {
+			Object value = entry.getValue();
+			if (value instanceof Object[]) {
+				value = Arrays.asList((Object[]) value);
+			}
+			result.put(entry.getKey(), value);
+		}
+		return result;
+	}
+
+	private static Bin stringBin(String name, String value) {
+		return value == null ? Bin.asNull(name) : new Bin(name, value);
+	}
+}
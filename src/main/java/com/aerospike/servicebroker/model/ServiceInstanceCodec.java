@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.model;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+
+/**
+ * Stores a ServiceInstance as one string bin per field. Records written by
+ * earlier broker versions hold the whole object Java-serialized in the
+ * "instance" bin; those are still decoded, and the legacy bin is cleared the
+ * next time the record is written.
+ */
+public class ServiceInstanceCodec implements RecordCodec<ServiceInstance> {
+	public static final String LEGACY_BIN = "instance";
+
+	public static final String ID_BIN = "id";
+	public static final String DEFINITION_ID_BIN = "definitionId";
+	public static final String PLAN_ID_BIN = "planId";
+	public static final String ORG_GUID_BIN = "orgGuid";
+	public static final String SPACE_GUID_BIN = "spaceGuid";
+	public static final String DASHBOARD_URL_BIN = "dashboardUrl";
+	public static final String NAMESPACE_BIN = "namespace";
+
+	@Override
+	public Bin[] encode(ServiceInstance instance) {
+		return new Bin[] {
+				stringBin(ID_BIN, instance.getServiceInstanceId()),
+				stringBin(DEFINITION_ID_BIN, instance.getServiceDefinitionId()),
+				stringBin(PLAN_ID_BIN, instance.getPlanId()),
+				stringBin(ORG_GUID_BIN, instance.getOrganizationGuid()),
+				stringBin(SPACE_GUID_BIN, instance.getSpaceGuid()),
+				stringBin(DASHBOARD_URL_BIN, instance.getDashboardUrl()),
+				stringBin(NAMESPACE_BIN, instance.getNamespace()),
+				Bin.asNull(LEGACY_BIN)
+		};
+	}
+
+	@Override
+	public ServiceInstance decode(Record record) {
+		Object legacy = record.getValue(LEGACY_BIN);
+		if (legacy instanceof ServiceInstance) {
+			return (ServiceInstance) legacy;
+		}
+		return new ServiceInstance(
+				record.getString(ID_BIN),
+				record.getString(DEFINITION_ID_BIN),
+				record.getString(PLAN_ID_BIN),
+				record.getString(ORG_GUID_BIN),
+				record.getString(SPACE_GUID_BIN),
+				record.getString(DASHBOARD_URL_BIN),
+				record.getString(NAMESPACE_BIN));
+	}
+
+	private static Bin stringBin(String name, String value) {
+		return value == null ? Bin.asNull(name) : new Bin(name, value);
+	}
+}
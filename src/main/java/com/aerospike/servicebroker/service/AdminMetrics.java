@@ -0,0 +1,118 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.aerospike.client.AerospikeException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Times admin-store and cluster calls by operation, and counts failures by
+ * Aerospike result code so that slow or failing binds can be traced to the
+ * store, the Info protocol or the security subsystem.
+ */
+public class AdminMetrics {
+	static final String REQUESTS = "aerospike.admin.requests";
+	static final String ERRORS = "aerospike.admin.errors";
+
+	private static final String SUCCESS = "success";
+	private static final String ERROR = "error";
+
+	private final MeterRegistry registry;
+	private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+	public AdminMetrics(MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	public MeterRegistry getRegistry() {
+		return registry;
+	}
+
+	public <T> T record(String operation, Supplier<T> call) {
+		long start = System.nanoTime();
+		try {
+			T result = call.get();
+			complete(operation, start, null);
+			return result;
+		} catch (RuntimeException e) {
+			complete(operation, start, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Like record, but the call is timed until the future it returns
+	 * completes.
+	 */
+	public <T> CompletableFuture<T> recordAsync(String operation, Supplier<CompletableFuture<T>> call) {
+		long start = System.nanoTime();
+		CompletableFuture<T> future;
+		try {
+			future = call.get();
+		} catch (RuntimeException e) {
+			complete(operation, start, e);
+			throw e;
+		}
+		return future.whenComplete((result, error) -> complete(operation, start, error));
+	}
+
+	public void record(String operation, Runnable call) {
+		record(operation, () -> {
+			call.run();
+			return null;
+		});
+	}
+
+	private void complete(String operation, long start, Throwable error) {
+		if (error instanceof CompletionException && error.getCause() != null) {
+			error = error.getCause();
+		}
+		if (error instanceof AerospikeException) {
+			errorCounter(operation, String.valueOf(((AerospikeException) error).getResultCode())).increment();
+		} else if (error != null) {
+			errorCounter(operation, "none").increment();
+		}
+		timer(operation, error == null ? SUCCESS : ERROR).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+	}
+
+	private Timer timer(String operation, String outcome) {
+		return timers.computeIfAbsent(operation + '/' + outcome, key -> Timer.builder(REQUESTS)
+				.description("Latency of admin store and cluster calls")
+				.tag("operation", operation)
+				.tag("outcome", outcome)
+				.publishPercentileHistogram()
+				.register(registry));
+	}
+
+	private Counter errorCounter(String operation, String resultCode) {
+		return Counter.builder(ERRORS)
+				.description("Failed admin store and cluster calls by Aerospike result code")
+				.tag("operation", operation)
+				.tag("result_code", resultCode)
+				.register(registry);
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.aerospike.servicebroker.cache.ExpiringCache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Publishes the admin service's state: instance and binding counts, cache
+ * effectiveness and the outcome of retried security commands.
+ */
+@Component
+public class AdminMetricsBinder implements MeterBinder {
+	@Autowired
+	private AerospikeAdminService adminService;
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		Gauge.builder("aerospike.admin.instances", adminService, service -> count(service.getServiceCount()))
+				.description("Service instances in the admin namespace")
+				.register(registry);
+		Gauge.builder("aerospike.admin.bindings", adminService, service -> count(service.getServiceBindingCount()))
+				.description("Service bindings in the admin namespace")
+				.register(registry);
+
+		bindCache(registry, "service", adminService.getServiceCache());
+		bindCache(registry, "binding", adminService.getServiceBindingCache());
+
+		RetryExecutor retryExecutor = adminService.getRetryExecutor();
+		for (RetryExecutor.Outcome outcome : RetryExecutor.Outcome.values()) {
+			RetryExecutor.OutcomeStats stats = retryExecutor.getStats(outcome);
+			String tag = outcome.name().toLowerCase();
+			FunctionTimer.builder("aerospike.admin.security.commands", stats,
+					RetryExecutor.OutcomeStats::getCount, RetryExecutor.OutcomeStats::getTotalLatencyNanos,
+					TimeUnit.NANOSECONDS)
+					.description("Security commands, including retries, by outcome")
+					.tag("outcome", tag)
+					.register(registry);
+			FunctionCounter.builder("aerospike.admin.security.attempts", stats, RetryExecutor.OutcomeStats::getAttempts)
+					.description("Attempts made by security commands, by outcome")
+					.tag("outcome", tag)
+					.register(registry);
+		}
+	}
+
+	private static void bindCache(MeterRegistry registry, String name, ExpiringCache<?, ?> cache) {
+		FunctionCounter.builder("aerospike.admin.cache.hits", cache, ExpiringCache::getHitCount)
+				.tag("cache", name)
+				.register(registry);
+		FunctionCounter.builder("aerospike.admin.cache.misses", cache, ExpiringCache::getMissCount)
+				.tag("cache", name)
+				.register(registry);
+		Gauge.builder("aerospike.admin.cache.size", cache, ExpiringCache::size)
+				.tag("cache", name)
+				.register(registry);
+	}
+
+	private static double count(long value) {
+		return value < 0 ? Double.NaN : value;
+	}
+}
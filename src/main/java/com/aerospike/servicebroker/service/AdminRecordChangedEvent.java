@@ -0,0 +1,46 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import org.springframework.context.ApplicationEvent;
+
+import com.aerospike.servicebroker.model.AdminChange;
+
+/**
+ * Published by AerospikeAdminService after it has written or deleted a
+ * service instance or binding record.
+ */
+public class AdminRecordChangedEvent extends ApplicationEvent {
+	private static final long serialVersionUID = -2284513946520736208L;
+
+	private final AdminChange.Kind kind;
+	private final String id;
+
+	public AdminRecordChangedEvent(Object source, AdminChange.Kind kind, String id) {
+		super(source);
+		this.kind = kind;
+		this.id = id;
+	}
+
+	public AdminChange.Kind getKind() {
+		return kind;
+	}
+
+	public String getId() {
+		return id;
+	}
+}
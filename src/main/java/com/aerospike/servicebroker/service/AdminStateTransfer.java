@@ -0,0 +1,341 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceBindingExistsException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceExistsException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Host;
+import com.aerospike.client.Record;
+import com.aerospike.servicebroker.config.AerospikeClientConfig;
+import com.aerospike.servicebroker.config.AerospikeQuotaConfig;
+import com.aerospike.servicebroker.model.RecordCodec;
+import com.aerospike.servicebroker.model.ServiceInstance;
+import com.aerospike.servicebroker.model.ServiceInstanceBinding;
+import com.aerospike.servicebroker.model.ServiceInstanceBindingCodec;
+import com.aerospike.servicebroker.model.ServiceInstanceCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Exports the broker's service instances and bindings to a gzipped file
+ * with one JSON record per line, or imports them from one, when the broker
+ * is started with --export-state=&lt;file&gt; or --import-state=&lt;file&gt;.
+ * The broker then starts without its web server or scheduled jobs, so that
+ * nothing else writes to the cluster during the transfer, and exits once
+ * the transfer is done.
+ * <p>
+ * Records are streamed: the export writes each record as the scan returns
+ * it, and the import reads a line at a time and writes batchSize records
+ * at a time, waiting for each batch before reading on. Memory use does not
+ * grow with the number of records. Records are written with the same codecs
+ * as the broker's own, so legacy records come out in the current format.
+ * Imports never overwrite: records that already exist are skipped, so an
+ * interrupted import can simply be run again.
+ * <p>
+ * An import can target another cluster. Each binding's user and role are
+ * created there with the stored password before its record is written, and
+ * the host fields of its credentials are rewritten to the target's seeds.
+ * The cluster name and node list are dropped from them, since they describe
+ * the source cluster; a rebind adds the target's.
+ */
+@Component
+public class AdminStateTransfer implements ApplicationRunner {
+	static final String EXPORT_OPTION = "export-state";
+	static final String IMPORT_OPTION = "import-state";
+
+	static final String TYPE_FIELD = "type";
+	static final String BINS_FIELD = "bins";
+	static final String SERVICE_TYPE = "service";
+	static final String BINDING_TYPE = "binding";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+	@Autowired
+	AerospikeAdminService adminService;
+
+	@Autowired
+	AerospikeQuotaConfig quotaConfig;
+
+	@Autowired
+	private ApplicationContext context;
+
+	private final int batchSize;
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final RecordCodec<ServiceInstance> serviceCodec = new ServiceInstanceCodec();
+	private final RecordCodec<ServiceInstanceBinding> bindingCodec = new ServiceInstanceBindingCodec();
+
+	private Logger logger = LoggerFactory.getLogger(AdminStateTransfer.class);
+
+	@Autowired
+	public AdminStateTransfer(AerospikeClientConfig config) {
+		this(config.policies.batchSize);
+	}
+
+	AdminStateTransfer(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Whether the command line asks for an export or an import.
+	 */
+	public static boolean isRequested(String[] args) {
+		for (String arg : args) {
+			if (arg.startsWith("--" + EXPORT_OPTION) || arg.startsWith("--" + IMPORT_OPTION)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void run(ApplicationArguments args) throws IOException {
+		boolean export = args.containsOption(EXPORT_OPTION);
+		boolean restore = args.containsOption(IMPORT_OPTION);
+		if (!export && !restore) {
+			return;
+		}
+		int exitCode = 0;
+		try {
+			if (export) {
+				String file = args.getOptionValues(EXPORT_OPTION).get(0);
+				try (OutputStream out = new FileOutputStream(file)) {
+					exportTo(out);
+				}
+			} else {
+				String file = args.getOptionValues(IMPORT_OPTION).get(0);
+				try (InputStream in = new FileInputStream(file)) {
+					importFrom(in);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			logger.error((export ? "Export" : "Import") + " failed: " + e.getMessage(), e);
+			exitCode = 1;
+		}
+		int code = exitCode;
+		System.exit(SpringApplication.exit(context, () -> code));
+	}
+
+	/**
+	 * Write every service instance and then every binding.
+	 * @return the number of records written
+	 */
+	long exportTo(OutputStream out) throws IOException {
+		Progress progress = new Progress("Exported");
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+				new GZIPOutputStream(out, BUFFER_SIZE), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+			try {
+				adminService.scanServices(instance -> {
+					writeLine(writer, SERVICE_TYPE, serviceCodec.encode(instance));
+					progress.add(true);
+				});
+				adminService.scanServiceBindings(binding -> {
+					writeLine(writer, BINDING_TYPE, bindingCodec.encode(binding));
+					progress.add(true);
+				});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+		progress.finish();
+		return progress.written;
+	}
+
+	/**
+	 * Create every record of an export that does not exist yet.
+	 * @return the number of records created
+	 */
+	long importFrom(InputStream in) throws IOException {
+		Progress progress = new Progress("Imported");
+		List<Host> seeds = adminService.getSeeds();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new GZIPInputStream(in, BUFFER_SIZE), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+			List<CompletableFuture<Void>> batch = new ArrayList<>(batchSize);
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty()) {
+					continue;
+				}
+				batch.add(create(line, seeds));
+				if (batch.size() == batchSize) {
+					awaitBatch(batch, progress);
+				}
+			}
+			awaitBatch(batch, progress);
+		}
+		progress.finish();
+		return progress.written;
+	}
+
+	@SuppressWarnings("unchecked")
+	private CompletableFuture<Void> create(String line, List<Host> seeds) throws IOException {
+		Map<String, Object> entry = mapper.readValue(line, Map.class);
+		Record record = toRecord((Map<String, Object>) entry.get(BINS_FIELD));
+		Object type = entry.get(TYPE_FIELD);
+		if (SERVICE_TYPE.equals(type)) {
+			return adminService.createServiceAsync(serviceCodec.decode(record));
+		}
+		if (BINDING_TYPE.equals(type)) {
+			ServiceInstanceBinding binding = relocate(bindingCodec.decode(record), seeds);
+			// The user comes first, so that a binding whose user failed is
+			// not skipped as existing when the import is run again
+			adminService.createBindingUser(binding);
+			applyQuotas(binding);
+			return adminService.createServiceBindingAsync(binding);
+		}
+		throw new IOException("Unknown record type " + type);
+	}
+
+	private static ServiceInstanceBinding relocate(ServiceInstanceBinding binding, List<Host> seeds) {
+		Map<String, Object> credentials = new HashMap<>(binding.getCredentials());
+		String[] hosts = new String[seeds.size()];
+		for (int i = 0; i < hosts.length; i++) {
+			hosts[i] = seeds.get(i).toString();
+		}
+		credentials.put("hostname", seeds.get(0).name);
+		credentials.put("port", seeds.get(0).port);
+		credentials.put("hosts", hosts);
+		credentials.remove("cluster_name");
+		credentials.remove("nodes");
+		return new ServiceInstanceBinding(binding.getId(), binding.getServiceInstanceId(), credentials, null,
+				binding.getAppGuid(), binding.getRoleName())
+				.withQuotas(binding.getReadQuota(), binding.getWriteQuota());
+	}
+
+	private void applyQuotas(ServiceInstanceBinding binding) {
+		String namespace = (String) binding.getCredentials().get("namespace");
+		int readQuota = AerospikeQuotaConfig.effective(quotaConfig.getReadQuota(namespace), binding.getReadQuota());
+		int writeQuota = AerospikeQuotaConfig.effective(quotaConfig.getWriteQuota(namespace),
+				binding.getWriteQuota());
+		if (readQuota > 0 || writeQuota > 0) {
+			adminService.setRoleQuotas(adminService.getBindingRoleName(binding), readQuota, writeQuota);
+		}
+	}
+
+	private static void awaitBatch(List<CompletableFuture<Void>> batch, Progress progress) {
+		for (CompletableFuture<Void> create : batch) {
+			try {
+				AerospikeAdminService.await(create);
+				progress.add(true);
+			} catch (ServiceInstanceExistsException | ServiceInstanceBindingExistsException e) {
+				progress.add(false);
+			}
+		}
+		batch.clear();
+	}
+
+	private void writeLine(Writer writer, String type, Bin[] bins) {
+		Map<String, Object> values = new LinkedHashMap<>();
+		for (Bin bin : bins) {
+			Object value = bin.value.getObject();
+			if (value != null) {
+				values.put(bin.name, value);
+			}
+		}
+		Map<String, Object> entry = new LinkedHashMap<>();
+		entry.put(TYPE_FIELD, type);
+		entry.put(BINS_FIELD, values);
+		try {
+			writer.write(mapper.writeValueAsString(entry));
+			writer.write('\n');
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static Record toRecord(Map<String, Object> bins) {
+		Map<String, Object> values = new HashMap<>();
+		if (bins != null) {
+			for (Map.Entry<String, Object> bin : bins.entrySet()) {
+				Object value = bin.getValue();
+				// The server returns every integer bin as a long
+				values.put(bin.getKey(), value instanceof Integer ? Long.valueOf((Integer) value) : value);
+			}
+		}
+		return new Record(values, 0, 0);
+	}
+
+	/*
+	 * Counts records and logs the count and rate every few seconds.
+	 */
+	private class Progress {
+		private final String verb;
+		private final long start = System.nanoTime();
+		private long lastLog = start;
+		private long written;
+		private long skipped;
+
+		Progress(String verb) {
+			this.verb = verb;
+		}
+
+		void add(boolean wasWritten) {
+			if (wasWritten) {
+				written++;
+			} else {
+				skipped++;
+			}
+			long now = System.nanoTime();
+			if (now - lastLog >= PROGRESS_INTERVAL_NANOS) {
+				lastLog = now;
+				log(now);
+			}
+		}
+
+		void finish() {
+			log(System.nanoTime());
+		}
+
+		private void log(long now) {
+			double seconds = Math.max(now - start, 1) / 1e9;
+			String skippedNote = skipped > 0 ? ", skipped " + skipped + " existing," : "";
+			logger.info(String.format("%s %d records%s in %.1f s (%.0f records/s)", verb, written, skippedNote,
+					seconds, (written + skipped) / seconds));
+		}
+	}
+}
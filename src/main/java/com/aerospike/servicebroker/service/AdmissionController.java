@@ -0,0 +1,149 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.aerospike.servicebroker.config.AerospikeAdmissionConfig;
+import com.aerospike.servicebroker.exception.AerospikeRateLimitedException;
+import com.aerospike.servicebroker.exception.AerospikeServiceUnavailableException;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Admission control for lifecycle requests. Provisions and binds take a
+ * token from their organization's bucket, so one busy organization cannot
+ * use up the capacity of all the others. Security commands run on request
+ * threads also need one of a fixed number of permits, which caps the load
+ * on the cluster's security subsystem. Requests over either limit are
+ * refused with a Retry-After rather than queued.
+ */
+@Component
+public class AdmissionController implements MeterBinder {
+	// Buckets that are full again carry no state and are dropped past this size
+	private static final int MAX_TRACKED_ORGS = 10000;
+
+	private final AerospikeAdmissionConfig config;
+	private final LongSupplier nanoClock;
+	private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+	private final Semaphore securityPermits;
+
+	private final AtomicLong rateLimited = new AtomicLong();
+	private final AtomicLong permitsRefused = new AtomicLong();
+
+	private Logger logger = LoggerFactory.getLogger(AdmissionController.class);
+
+	@Autowired
+	public AdmissionController(AerospikeAdmissionConfig config) {
+		this(config, System::nanoTime);
+	}
+
+	AdmissionController(AerospikeAdmissionConfig config, LongSupplier nanoClock) {
+		this.config = config;
+		this.nanoClock = nanoClock;
+		this.securityPermits = config.maxConcurrentSecurityCommands > 0
+				? new Semaphore(config.maxConcurrentSecurityCommands) : null;
+	}
+
+	/**
+	 * Take a token for a lifecycle request by the given organization.
+	 * @throws AerospikeRateLimitedException if the organization is over its rate
+	 */
+	public void admit(String organizationGuid) {
+		if (config.orgRatePerSecond <= 0 || organizationGuid == null) {
+			return;
+		}
+		long now = nanoClock.getAsLong();
+		if (buckets.size() >= MAX_TRACKED_ORGS) {
+			buckets.values().removeIf(bucket -> bucket.isFull(now));
+		}
+		long waitNanos = buckets.computeIfAbsent(organizationGuid,
+				org -> new TokenBucket(config.orgBurst, config.orgRatePerSecond, now)).tryTake(now);
+		if (waitNanos > 0) {
+			rateLimited.incrementAndGet();
+			logger.info("Rate limited organization " + organizationGuid);
+			int retryAfterSeconds = (int) Math.ceil(waitNanos / 1e9);
+			throw new AerospikeRateLimitedException("Too many requests for organization " + organizationGuid
+					+ ". Please try again later.", retryAfterSeconds);
+		}
+	}
+
+	/**
+	 * Run security commands under one of the shared permits, waiting at most
+	 * securityPermitWaitMs for one to come free.
+	 * @throws AerospikeServiceUnavailableException if no permit came free
+	 */
+	public <T> T withSecurityPermit(Supplier<T> commands) {
+		if (securityPermits == null) {
+			return commands.get();
+		}
+		try {
+			if (!securityPermits.tryAcquire(config.securityPermitWaitMs, TimeUnit.MILLISECONDS)) {
+				permitsRefused.incrementAndGet();
+				throw new AerospikeServiceUnavailableException(
+						"Too many user and role changes in progress. Please try again.", 1);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AerospikeServiceUnavailableException("Interrupted. Please try again.", 1);
+		}
+		try {
+			return commands.get();
+		} finally {
+			securityPermits.release();
+		}
+	}
+
+	public void withSecurityPermit(Runnable commands) {
+		withSecurityPermit(() -> {
+			commands.run();
+			return null;
+		});
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("aerospike.admin.admission.rejected", rateLimited, AtomicLong::get)
+				.description("Lifecycle requests refused by admission control")
+				.tag("reason", "rate_limit")
+				.register(registry);
+		FunctionCounter.builder("aerospike.admin.admission.rejected", permitsRefused, AtomicLong::get)
+				.description("Lifecycle requests refused by admission control")
+				.tag("reason", "concurrency")
+				.register(registry);
+		if (securityPermits != null) {
+			Gauge.builder("aerospike.admin.security.permits.in.use", securityPermits,
+					permits -> config.maxConcurrentSecurityCommands - permits.availablePermits())
+					.description("Security commands currently running for requests")
+					.register(registry);
+		}
+	}
+}
@@ -16,13 +16,31 @@
  */
 package com.aerospike.servicebroker.service;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.auth.AuthScope;
@@ -35,33 +53,92 @@ import org.apache.http.impl.client.HttpClientBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceBindingExistsException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceExistsException;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.stereotype.Service;
 
 import com.aerospike.client.AerospikeClient;
 import com.aerospike.client.AerospikeException;
 import com.aerospike.client.Bin;
-import com.aerospike.client.Info;
+import com.aerospike.client.Host;
+import com.aerospike.client.IAerospikeClient;
 import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
 import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
 import com.aerospike.client.admin.Privilege;
 import com.aerospike.client.admin.PrivilegeCode;
+import com.aerospike.client.admin.Role;
+import com.aerospike.client.admin.User;
+import com.aerospike.client.async.EventLoops;
 import com.aerospike.client.cluster.Node;
+import com.aerospike.client.listener.DeleteListener;
+import com.aerospike.client.listener.RecordListener;
+import com.aerospike.client.policy.AdminPolicy;
+import com.aerospike.client.policy.BatchPolicy;
 import com.aerospike.client.policy.ClientPolicy;
+import com.aerospike.client.policy.GenerationPolicy;
+import com.aerospike.client.policy.InfoPolicy;
+import com.aerospike.client.policy.Policy;
+import com.aerospike.client.policy.QueryPolicy;
+import com.aerospike.client.policy.RecordExistsAction;
+import com.aerospike.client.policy.ScanPolicy;
+import com.aerospike.client.policy.TlsPolicy;
+import com.aerospike.client.policy.WritePolicy;
+import com.aerospike.client.query.Filter;
+import com.aerospike.client.query.IndexType;
+import com.aerospike.client.query.RecordSet;
+import com.aerospike.client.query.Statement;
+import com.aerospike.client.task.IndexTask;
+import com.aerospike.servicebroker.cache.ExpiringCache;
+import com.aerospike.servicebroker.config.AerospikeCacheConfig;
 import com.aerospike.servicebroker.config.AerospikeClientConfig;
+import com.aerospike.servicebroker.config.AerospikeRetryConfig;
 import com.aerospike.servicebroker.exception.AerospikeServiceException;
+import com.aerospike.servicebroker.exception.AerospikeServiceUnavailableException;
+import com.aerospike.servicebroker.model.AdminChange;
+import com.aerospike.servicebroker.model.AdminChangeCodec;
+import com.aerospike.servicebroker.model.AsyncOperation;
+import com.aerospike.servicebroker.model.AsyncOperationCodec;
+import com.aerospike.servicebroker.model.ClusterTopology;
+import com.aerospike.servicebroker.model.PlanQuotas;
+import com.aerospike.servicebroker.model.PlanQuotasCodec;
+import com.aerospike.servicebroker.model.PooledCredential;
+import com.aerospike.servicebroker.model.PooledCredentialCodec;
+import com.aerospike.servicebroker.model.RecordCodec;
 import com.aerospike.servicebroker.model.ServiceInstance;
 import com.aerospike.servicebroker.model.ServiceInstanceBinding;
+import com.aerospike.servicebroker.model.ServiceInstanceBindingCodec;
+import com.aerospike.servicebroker.model.ServiceInstanceCodec;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 
 @Service
-public class AerospikeAdminService {
+public class AerospikeAdminService implements ApplicationEventPublisherAware {
 	// These could be externalized
 	private static final String ADMIN_BINDING = "binding";
 	private static final String ADMIN_SERVICE = "service";
+	private static final String ADMIN_OPERATION = "operation";
+	private static final String ADMIN_POOL = "pool";
+	private static final String ADMIN_CHANGE = "change";
+	private static final String ADMIN_QUOTA = "quota";
+	private static final String ADMIN_OWNED = "owned";
+	private static final String OWNED_NAME_BIN = "name";
+	private static final String BINDING_INSTANCE_INDEX = "binding_instance_id";
+	private static final String CHANGE_TIMESTAMP_INDEX = "change_ts";
+	private static final String OPERATION_STATE_INDEX = "operation_state";
 
-	private static final String SERVICE_INSTANCE_BINNAME = "instance";
-	private static final String SERVICE_BINDING_BINNAME = "binding";
+	// Pool users and roles get their own prefixes so they are never mistaken
+	// for the names derived from a binding id
+	static final String POOL_USER_PREFIX = "pu";
+	static final String POOL_ROLE_PREFIX = "pr";
 
-	private static final String NAMESPACES_INFO = "namespaces";
+	// Operation records only need to outlive Cloud Controller's polling
+	private static final int OPERATION_TTL_SECONDS = 7 * 24 * 60 * 60;
 
 	private static final String ENTERPRISE = "enterprise";
 	private static final String AEROSPIKE = "aerospike";
@@ -69,61 +146,276 @@ public class AerospikeAdminService {
 
 	private Logger logger = LoggerFactory.getLogger(AerospikeAdminService.class);
 
-	private AerospikeClient client;
-	private Map<String, Map<String, String>> namespaceInfo = new HashMap<String, Map<String, String>>();
+	private static final int CONNECT_RETRY_SECONDS = 5;
+	private static final int CONFLICT_RETRY_SECONDS = 1;
+
+	private volatile IAerospikeClient client;
+	private volatile boolean ready;
+	private ScheduledExecutorService startupExecutor;
+	private volatile Map<String, Map<String, String>> namespaceInfo = Collections.emptyMap();
+	private volatile ClusterTopology topology = ClusterTopology.EMPTY;
+	private ApplicationEventPublisher eventPublisher;
+	private final NamespaceInfoCollector namespaceInfoCollector = new NamespaceInfoCollector();
+	private final TopologySnapshot topologySnapshot = new TopologySnapshot();
+	private final SeedProber seedProber = new SeedProber();
 
 	private AerospikeClientConfig config;
 
+	private final Policy readPolicy;
+	private final WritePolicy writePolicy;
+	private final InfoPolicy infoPolicy;
+	private final AdminPolicy adminPolicy;
+	private final BatchPolicy batchPolicy;
+	private final ScanPolicy scanPolicy;
+	private final QueryPolicy queryPolicy;
+	private final Semaphore bulkPermits;
+
+	private final RecordCodec<ServiceInstance> serviceCodec = new ServiceInstanceCodec();
+	private final RecordCodec<ServiceInstanceBinding> bindingCodec = new ServiceInstanceBindingCodec();
+	private final RecordCodec<AsyncOperation> operationCodec = new AsyncOperationCodec();
+	private final RecordCodec<PooledCredential> poolCodec = new PooledCredentialCodec();
+	private final RecordCodec<AdminChange> changeCodec = new AdminChangeCodec();
+	private final RecordCodec<PlanQuotas> quotaCodec = new PlanQuotasCodec();
+
+	private final ExpiringCache<String, AdminRecord<ServiceInstance>> serviceCache;
+	private final ExpiringCache<String, AdminRecord<ServiceInstanceBinding>> bindingCache;
+
+	private final RetryExecutor retryExecutor;
+	private EventLoops eventLoops;
+
+	private AdminMetrics metrics = new AdminMetrics(Metrics.globalRegistry);
+	private volatile long serviceCount = -1;
+	private volatile long bindingCount = -1;
+	private volatile boolean quotasUnsupported;
+
 	@Autowired
-	public AerospikeAdminService(AerospikeClientConfig config) {
+	public AerospikeAdminService(AerospikeClientConfig config, AerospikeCacheConfig cacheConfig,
+			AerospikeRetryConfig retryConfig) {
+		this(config, cacheConfig, retryConfig, null);
+		this.eventLoops = config.policies.createEventLoops();
+		if (config.lazyStartup) {
+			startInBackground();
+		} else {
+			this.client = createClient(config, this.eventLoops, this.seedProber, true);
+			this.namespaceInfo = readNamespaceInfo(false);
+			this.ready = true;
+			refreshTopologyQuietly();
+			ensureBindingIndex();
+		}
+	}
+
+	/*
+	 * Used directly by benchmarks to run against a stand-in client. No
+	 * namespace discovery is performed.
+	 */
+	AerospikeAdminService(AerospikeClientConfig config, AerospikeCacheConfig cacheConfig,
+			AerospikeRetryConfig retryConfig, IAerospikeClient client) {
 		this.config = config;
-		this.client = getClient();
-
-		Set<String> namespaces;
-		namespaces = new HashSet<String>(
-				Arrays.asList(Info.request(this.client.getNodes()[0], NAMESPACES_INFO).split(";")));
-		if (!namespaces.contains(config.adminNamespace)) {
-			throw new AerospikeServiceException("Namspace " + config.adminNamespace
-					+ " must be configured in order to use the service broker with this database.");
-		}
-
-		for (String ns : namespaces) {
-			if (!ns.equalsIgnoreCase(config.adminNamespace)) {
-				String info = Info.request(this.client.getNodes()[0], "namespace/" + ns);
-				String[] infos = info.split(";");
-				Map<String, String> infoHash = new HashMap<String, String>();
-
-				for (String inf : infos) {
-					String[] data = inf.split("=");
-					if (data != null && data.length == 2) {
-						infoHash.put(data[0], data[1]);
-					}
-				}
-				namespaceInfo.put(ns, infoHash);
+		this.readPolicy = config.policies.readPolicy();
+		this.writePolicy = config.policies.writePolicy();
+		this.infoPolicy = config.policies.infoPolicy();
+		this.adminPolicy = config.policies.adminPolicy();
+		this.batchPolicy = config.policies.batchPolicy();
+		this.scanPolicy = config.policies.scanPolicy();
+		this.queryPolicy = config.policies.queryPolicy();
+		this.bulkPermits = new Semaphore(config.policies.maxConcurrentBulkRequests);
+		this.retryExecutor = new RetryExecutor(retryConfig);
+		this.serviceCache = new ExpiringCache<String, AdminRecord<ServiceInstance>>(cacheConfig.maxEntries,
+				cacheConfig.ttlSeconds, TimeUnit.SECONDS);
+		this.bindingCache = new ExpiringCache<String, AdminRecord<ServiceInstanceBinding>>(cacheConfig.maxEntries,
+				cacheConfig.ttlSeconds, TimeUnit.SECONDS);
+		this.client = client;
+		this.ready = client != null;
+	}
+
+	/*
+	 * In lazy startup mode the client is created without waiting for the
+	 * cluster, and namespace discovery is retried in the background until it
+	 * succeeds. Until then every cluster-facing call fails with a retriable
+	 * AerospikeServiceUnavailableException.
+	 */
+	private void startInBackground() {
+		this.startupExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "aerospike-startup");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.startupExecutor.execute(this::connect);
+	}
+
+	private void connect() {
+		try {
+			if (this.client == null) {
+				this.client = createClient(config, this.eventLoops, this.seedProber, false);
+			}
+			// Any node that answers is enough to start with
+			Map<String, Map<String, String>> latest = readNamespaceInfo(false);
+			this.namespaceInfo = latest;
+			this.ready = true;
+			logger.info("Connected to Aerospike cluster, namespaces: " + latest.keySet());
+			refreshTopologyQuietly();
+			ensureBindingIndex();
+			if (eventPublisher != null) {
+				eventPublisher.publishEvent(new NamespaceInfoChangedEvent(this, latest));
 			}
+			this.startupExecutor.shutdown();
+		} catch (RuntimeException e) {
+			logger.warn("Aerospike cluster not available, retrying in " + CONNECT_RETRY_SECONDS + " seconds: "
+					+ e.getMessage());
+			this.startupExecutor.schedule(this::connect, CONNECT_RETRY_SECONDS, TimeUnit.SECONDS);
 		}
 	}
 
-	private AerospikeClient getClient() {
-		ClientPolicy policy = new ClientPolicy();
-		policy.failIfNotConnected = true;
+	@Autowired(required = false)
+	public void setMeterRegistry(MeterRegistry registry) {
+		this.metrics = new AdminMetrics(registry);
+	}
+
+	public boolean isReady() {
+		return ready;
+	}
+
+	private void ensureReady() {
+		if (!ready) {
+			throw new AerospikeServiceUnavailableException(
+					"The Aerospike cluster is not available yet. Please try again.", CONNECT_RETRY_SECONDS);
+		}
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+		this.eventPublisher = eventPublisher;
+	}
+
+	private void publishChange(AdminChange.Kind kind, String id) {
+		if (eventPublisher != null) {
+			eventPublisher.publishEvent(new AdminRecordChangedEvent(this, kind, id));
+		}
+	}
+
+	/**
+	 * Re-read the namespace info from the cluster. If it differs from the
+	 * current info, the new map is swapped in and a
+	 * NamespaceInfoChangedEvent is published. Fails without a change if any
+	 * node does not answer, so that a rolling restart does not make the plans
+	 * shrink and grow again.
+	 * @return true if the namespace info changed
+	 */
+	public boolean refreshNamespaceInfo() {
+		if (!ready) {
+			return false;
+		}
+		Map<String, Map<String, String>> latest = readNamespaceInfo(true);
+		if (latest.equals(this.namespaceInfo)) {
+			return false;
+		}
+		logger.info("Namespace info changed: " + latest.keySet());
+		this.namespaceInfo = latest;
+		if (eventPublisher != null) {
+			eventPublisher.publishEvent(new NamespaceInfoChangedEvent(this, latest));
+		}
+		return true;
+	}
+
+	/**
+	 * Re-read the cluster name, rack ids and alternate addresses of the
+	 * cluster's nodes.
+	 */
+	public void refreshTopology() {
+		if (!ready) {
+			return;
+		}
+		Map<String, Map<String, String>> namespaces = this.namespaceInfo;
+		this.topology = metrics.record("topology",
+				() -> namespaceInfoCollector.collectTopology(this.client.getNodes(), infoPolicy, namespaces.keySet()));
+	}
+
+	private void refreshTopologyQuietly() {
+		try {
+			refreshTopology();
+		} catch (RuntimeException e) {
+			logger.warn("Could not read cluster topology, bindings will have no topology hints until the next "
+					+ "refresh: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * The cluster topology as of the last refreshTopology. Empty until it has
+	 * been read.
+	 */
+	public ClusterTopology getTopology() {
+		ensureReady();
+		return topology;
+	}
+
+	private Map<String, Map<String, String>> readNamespaceInfo(boolean allNodes) {
+		return metrics.record("namespaceInfo", () -> namespaceInfoCollector.collect(this.client.getNodes(),
+				infoPolicy, config.adminNamespace, allNodes));
+	}
+
+	/**
+	 * Re-count the instance and binding records in the admin namespace. The
+	 * counts are only as fresh as the last call, since counting needs an info
+	 * request to every node.
+	 */
+	public void refreshRecordCounts() {
+		if (!ready) {
+			return;
+		}
+		Node[] nodes = this.client.getNodes();
+		this.serviceCount = metrics.record("countServices",
+				() -> namespaceInfoCollector.countObjects(nodes, infoPolicy, config.adminNamespace, ADMIN_SERVICE));
+		this.bindingCount = metrics.record("countServiceBindings",
+				() -> namespaceInfoCollector.countObjects(nodes, infoPolicy, config.adminNamespace, ADMIN_BINDING));
+	}
+
+	/**
+	 * The number of service instances as of the last refreshRecordCounts, or
+	 * -1 if not known.
+	 */
+	public long getServiceCount() {
+		return serviceCount;
+	}
+
+	public long getServiceBindingCount() {
+		return bindingCount;
+	}
+
+	@PreDestroy
+	public void close() {
+		if (startupExecutor != null) {
+			startupExecutor.shutdownNow();
+		}
+		namespaceInfoCollector.close();
+		seedProber.close();
+		if (this.client != null) {
+			this.client.close();
+		}
+		if (this.eventLoops != null) {
+			this.eventLoops.close();
+		}
+	}
+
+	private static AerospikeClient createClient(AerospikeClientConfig config, EventLoops eventLoops,
+			SeedProber seedProber, boolean failIfNotConnected) {
+		ClientPolicy policy = config.policies.clientPolicy();
+		policy.eventLoops = eventLoops;
+		policy.failIfNotConnected = failIfNotConnected;
+		if (config.link.isTlsEnabled()) {
+			policy.tlsPolicy = new TlsPolicy();
+		}
 
 		if (ENTERPRISE.equalsIgnoreCase(config.licenseType)) {
 			policy.user = config.user;
 			policy.password = config.password;
 		}
-		AerospikeClient client = new AerospikeClient(policy, config.hostname, config.port);
+		List<Host> seeds = seedProber.probe(config.seeds, policy.timeout);
+		AerospikeClient client = new AerospikeClient(policy, seeds.toArray(new Host[seeds.size()]));
 		return client;
 	}
 
 	public boolean serviceExists(String serviceId) {
-		Key key = new Key(config.adminNamespace, ADMIN_SERVICE, serviceId);
-		try {
-			return this.client.exists(null, key);
-		} catch (AerospikeException ae) {
-			logger.info("serviceExists AerospikeException: " + ae.getMessage());
-			return false;
-		}
+		return lookupService(serviceId).isPresent();
 	}
 
 	public boolean validateLicense() {
@@ -161,167 +453,1019 @@ public class AerospikeAdminService {
 	}
 
 	public void createService(ServiceInstance serviceInstance) {
-		if (serviceInstance != null) {
-			Key key = new Key(config.adminNamespace, ADMIN_SERVICE, serviceInstance.getServiceInstanceId());
-			Bin bin = new Bin(SERVICE_INSTANCE_BINNAME, serviceInstance);
-			this.client.put(null, key, bin);
+		await(createServiceAsync(serviceInstance));
+	}
+
+	public CompletableFuture<Void> createServiceAsync(ServiceInstance serviceInstance) {
+		ensureReady();
+		if (serviceInstance == null) {
+			return CompletableFuture.completedFuture(null);
 		}
+		String id = serviceInstance.getServiceInstanceId();
+		Key key = new Key(config.adminNamespace, ADMIN_SERVICE, id);
+		WritePolicy policy = conditionalWritePolicy();
+		policy.recordExistsAction = RecordExistsAction.CREATE_ONLY;
+		CompletableFuture<Integer> write = metrics.recordAsync("createService",
+				() -> writeRecordAsync(policy, key, serviceCodec.encode(serviceInstance)));
+		return onResultCode(write, ResultCode.KEY_EXISTS_ERROR, this.serviceCache, id,
+				() -> new ServiceInstanceExistsException(id, serviceInstance.getServiceDefinitionId()))
+				.thenAccept(generation -> {
+					this.serviceCache.put(id, new AdminRecord<ServiceInstance>(serviceInstance, generation));
+					publishChange(AdminChange.Kind.SERVICE, id);
+				});
+	}
+
+	/**
+	 * Replace a service instance, provided its record is still at the given
+	 * generation. If another request changed it in the meantime, the update
+	 * is rejected and the caller asked to try again.
+	 */
+	public void updateService(ServiceInstance serviceInstance, int generation) {
+		ensureReady();
+		String id = serviceInstance.getServiceInstanceId();
+		Key key = new Key(config.adminNamespace, ADMIN_SERVICE, id);
+		WritePolicy policy = conditionalWritePolicy();
+		policy.recordExistsAction = RecordExistsAction.REPLACE_ONLY;
+		policy.generationPolicy = GenerationPolicy.EXPECT_GEN_EQUAL;
+		policy.generation = generation;
+		CompletableFuture<Integer> write = metrics.recordAsync("updateService",
+				() -> writeRecordAsync(policy, key, serviceCodec.encode(serviceInstance)));
+		await(onResultCode(write, ResultCode.GENERATION_ERROR, this.serviceCache, id,
+				() -> new AerospikeServiceUnavailableException("Service instance " + id
+						+ " was modified by another request. Please try again.", CONFLICT_RETRY_SECONDS))
+				.thenAccept(newGeneration -> {
+					this.serviceCache.put(id, new AdminRecord<ServiceInstance>(serviceInstance, newGeneration));
+					publishChange(AdminChange.Kind.SERVICE, id);
+				}));
 	}
 
 	public ServiceInstance getService(String serviceId) {
-		ServiceInstance service = null;
-		Key key = new Key(config.adminNamespace, ADMIN_SERVICE, serviceId);
-		try {
-			Record record = this.client.get(null, key);
+		return lookupService(serviceId).map(AdminRecord::getValue).orElse(null);
+	}
 
-			if (record != null) {
-				service = (ServiceInstance) record.getValue(SERVICE_INSTANCE_BINNAME);
-			}
-		} catch (AerospikeException ae) {
-			logger.info("getService AerospikeException: " + ae.getMessage());
+	/**
+	 * Read a service instance and the generation of its record in a single
+	 * round trip. The result is empty if the instance does not exist or could
+	 * not be read.
+	 */
+	public Optional<AdminRecord<ServiceInstance>> lookupService(String serviceId) {
+		return await(lookupServiceAsync(serviceId));
+	}
+
+	public CompletableFuture<Optional<AdminRecord<ServiceInstance>>> lookupServiceAsync(String serviceId) {
+		ensureReady();
+		AdminRecord<ServiceInstance> cached = this.serviceCache.get(serviceId);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(Optional.of(cached));
 		}
-		return service;
+		Key key = new Key(config.adminNamespace, ADMIN_SERVICE, serviceId);
+		return metrics.recordAsync("getService", () -> getAsync(key))
+				.thenApply(record -> {
+					if (record == null) {
+						return Optional.<AdminRecord<ServiceInstance>>empty();
+					}
+					AdminRecord<ServiceInstance> service = new AdminRecord<ServiceInstance>(
+							serviceCodec.decode(record), record.generation);
+					this.serviceCache.put(serviceId, service);
+					return Optional.of(service);
+				})
+				.exceptionally(e -> notFoundAsEmpty("lookupService", e));
 	}
 
 	public void deleteService(ServiceInstance serviceInstance) {
-		if (serviceInstance != null) {
-			Key key = new Key(config.adminNamespace, ADMIN_SERVICE, serviceInstance.getServiceInstanceId());
-			try {
-				this.client.delete(null, key);
-			} catch (AerospikeException ae) {
-				logger.info("deleteService AerospikeException: " + ae.getMessage());
-			}
+		await(deleteServiceAsync(serviceInstance));
+	}
+
+	public CompletableFuture<Void> deleteServiceAsync(ServiceInstance serviceInstance) {
+		ensureReady();
+		if (serviceInstance == null) {
+			return CompletableFuture.completedFuture(null);
 		}
+		Key key = new Key(config.adminNamespace, ADMIN_SERVICE, serviceInstance.getServiceInstanceId());
+		this.serviceCache.invalidate(serviceInstance.getServiceInstanceId());
+		return metrics.recordAsync("deleteService", () -> deleteAsync(key))
+				.handle((existed, e) -> {
+					if (e != null) {
+						logger.info("deleteService AerospikeException: " + unwrap(e).getMessage());
+					} else {
+						publishChange(AdminChange.Kind.SERVICE, serviceInstance.getServiceInstanceId());
+					}
+					return null;
+				});
 	}
 
 	public boolean serviceBindingExists(String serviceBindingId) {
+		return lookupServiceBinding(serviceBindingId).isPresent();
+	}
+
+	public void createServiceBinding(ServiceInstanceBinding binding) {
+		await(createServiceBindingAsync(binding));
+	}
+
+	public CompletableFuture<Void> createServiceBindingAsync(ServiceInstanceBinding binding) {
+		ensureReady();
+		if (binding == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		String id = binding.getId();
+		Key key = new Key(config.adminNamespace, ADMIN_BINDING, id);
+		WritePolicy policy = conditionalWritePolicy();
+		policy.recordExistsAction = RecordExistsAction.CREATE_ONLY;
+		CompletableFuture<Integer> write = metrics.recordAsync("createServiceBinding",
+				() -> writeRecordAsync(policy, key, bindingCodec.encode(binding)));
+		return onResultCode(write, ResultCode.KEY_EXISTS_ERROR, this.bindingCache, id,
+				() -> new ServiceInstanceBindingExistsException(binding.getServiceInstanceId(), id))
+				.thenAccept(generation -> {
+					this.bindingCache.put(id, new AdminRecord<ServiceInstanceBinding>(binding, generation));
+					publishChange(AdminChange.Kind.BINDING, id);
+				});
+	}
+
+	public ServiceInstanceBinding getServiceBinding(String serviceBindingId) {
+		return lookupServiceBinding(serviceBindingId).map(AdminRecord::getValue).orElse(null);
+	}
+
+	/**
+	 * Read a service binding and the generation of its record in a single
+	 * round trip. The result is empty if the binding does not exist or could
+	 * not be read.
+	 */
+	public Optional<AdminRecord<ServiceInstanceBinding>> lookupServiceBinding(String serviceBindingId) {
+		return await(lookupServiceBindingAsync(serviceBindingId));
+	}
+
+	public CompletableFuture<Optional<AdminRecord<ServiceInstanceBinding>>> lookupServiceBindingAsync(
+			String serviceBindingId) {
+		ensureReady();
+		AdminRecord<ServiceInstanceBinding> cached = this.bindingCache.get(serviceBindingId);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(Optional.of(cached));
+		}
 		Key key = new Key(config.adminNamespace, ADMIN_BINDING, serviceBindingId);
+		return metrics.recordAsync("getServiceBinding", () -> getAsync(key))
+				.thenApply(record -> {
+					if (record == null) {
+						return Optional.<AdminRecord<ServiceInstanceBinding>>empty();
+					}
+					AdminRecord<ServiceInstanceBinding> binding = new AdminRecord<ServiceInstanceBinding>(
+							bindingCodec.decode(record), record.generation);
+					this.bindingCache.put(serviceBindingId, binding);
+					return Optional.of(binding);
+				})
+				.exceptionally(e -> notFoundAsEmpty("lookupServiceBinding", e));
+	}
+
+	public void deleteServiceBinding(ServiceInstanceBinding binding) {
+		await(deleteServiceBindingAsync(binding));
+	}
+
+	public CompletableFuture<Void> deleteServiceBindingAsync(ServiceInstanceBinding binding) {
+		ensureReady();
+		if (binding == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		Key key = new Key(config.adminNamespace, ADMIN_BINDING, binding.getId());
+		this.bindingCache.invalidate(binding.getId());
+		return metrics.recordAsync("deleteServiceBinding", () -> deleteAsync(key))
+				.handle((existed, e) -> {
+					if (e != null) {
+						logger.error("deleteServiceBinding AerospikeException: " + unwrap(e).getMessage());
+					} else {
+						publishChange(AdminChange.Kind.BINDING, binding.getId());
+					}
+					return null;
+				});
+	}
+
+	/**
+	 * Return all bindings of a service instance, using the secondary index on
+	 * the bindings' instance id.
+	 */
+	public List<ServiceInstanceBinding> getServiceBindingsForInstance(String serviceInstanceId) {
+		ensureReady();
+		Statement statement = new Statement();
+		statement.setNamespace(config.adminNamespace);
+		statement.setSetName(ADMIN_BINDING);
+		statement.setFilter(Filter.equal(ServiceInstanceBindingCodec.INSTANCE_ID_BIN, serviceInstanceId));
+		List<ServiceInstanceBinding> bindings = new ArrayList<>();
+		query("queryServiceBindings", statement, record -> bindings.add(bindingCodec.decode(record)));
+		return bindings;
+	}
+
+	/*
+	 * Create the index behind getServiceBindingsForInstance. When it is new,
+	 * bindings still stored in the legacy single-bin format are rewritten so
+	 * that their instance id is indexed. Failure is logged rather than
+	 * fatal; instance deletes will fail until the index exists.
+	 */
+	private void ensureBindingIndex() {
+		if (createIndex(ADMIN_BINDING, BINDING_INSTANCE_INDEX, ServiceInstanceBindingCodec.INSTANCE_ID_BIN,
+				IndexType.STRING)) {
+			backfillBindingInstanceIds();
+		}
+	}
+
+	/**
+	 * Create the indexes behind queryChanges and queryOperationsInProgress.
+	 * Only needed when several replicas share the admin namespace.
+	 */
+	public void ensureSharedStateIndexes() {
+		ensureReady();
+		createIndex(ADMIN_CHANGE, CHANGE_TIMESTAMP_INDEX, AdminChangeCodec.TIMESTAMP_BIN, IndexType.NUMERIC);
+		createIndex(ADMIN_OPERATION, OPERATION_STATE_INDEX, AsyncOperationCodec.STATE_BIN, IndexType.STRING);
+	}
+
+	/*
+	 * Returns true if the index was created, false if it already existed or
+	 * could not be created.
+	 */
+	private boolean createIndex(String set, String indexName, String bin, IndexType type) {
 		try {
-			return this.client.exists(null, key);
+			IndexTask task = metrics.record("createIndex", () -> this.client.createIndex(readPolicy,
+					config.adminNamespace, set, indexName, bin, type));
+			task.waitTillComplete();
+			logger.info("Created index " + indexName);
+			return true;
 		} catch (AerospikeException ae) {
-			logger.error("serviceBindingExists AerospikeException: " + ae.getMessage());
+			if (ae.getResultCode() != ResultCode.INDEX_ALREADY_EXISTS) {
+				logger.error("Could not create index " + indexName + ": " + ae.getMessage());
+			}
 			return false;
 		}
 	}
 
-	public void createServiceBinding(ServiceInstanceBinding binding) {
-		if (binding != null) {
-			Key key = new Key(config.adminNamespace, ADMIN_BINDING, binding.getId());
-			Bin bin = new Bin(SERVICE_BINDING_BINNAME, binding);
-			this.client.put(null, key, bin);
+	private void backfillBindingInstanceIds() {
+		AtomicInteger rewritten = new AtomicInteger();
+		for (Node node : this.client.getNodes()) {
+			this.client.scanNode(scanPolicy, node, config.adminNamespace, ADMIN_BINDING, (key, record) -> {
+				if (record.getValue(ServiceInstanceBindingCodec.INSTANCE_ID_BIN) == null) {
+					// Only rewrite the record as scanned, so that a binding
+					// deleted or changed meanwhile is not brought back
+					WritePolicy policy = conditionalWritePolicy();
+					policy.recordExistsAction = RecordExistsAction.REPLACE_ONLY;
+					policy.generationPolicy = GenerationPolicy.EXPECT_GEN_EQUAL;
+					policy.generation = record.generation;
+					try {
+						writeRecord(policy, key, bindingCodec.encode(bindingCodec.decode(record)));
+						rewritten.incrementAndGet();
+					} catch (AerospikeException ae) {
+						if (ae.getResultCode() != ResultCode.KEY_NOT_FOUND_ERROR
+								&& ae.getResultCode() != ResultCode.GENERATION_ERROR) {
+							throw ae;
+						}
+					}
+				}
+			});
+		}
+		if (rewritten.get() > 0) {
+			logger.info("Rewrote " + rewritten.get() + " legacy binding records for " + BINDING_INSTANCE_INDEX);
 		}
 	}
 
-	public ServiceInstanceBinding getServiceBinding(String serviceBindingId) {
-		ServiceInstanceBinding binding = null;
-		Key key = new Key(config.adminNamespace, ADMIN_BINDING, serviceBindingId);
+	/**
+	 * Read many service instances, batchSize keys per batch request. Missing
+	 * instances are left out of the result. Bulk reads bypass the cache.
+	 */
+	public Map<String, AdminRecord<ServiceInstance>> getServices(Collection<String> serviceIds) {
+		return batchGet("batchGetServices", ADMIN_SERVICE, serviceCodec, serviceIds);
+	}
+
+	public Map<String, AdminRecord<ServiceInstanceBinding>> getServiceBindings(Collection<String> bindingIds) {
+		return batchGet("batchGetServiceBindings", ADMIN_BINDING, bindingCodec, bindingIds);
+	}
+
+	/**
+	 * Scan every service instance, one node at a time, passing each to the
+	 * consumer on the calling thread.
+	 */
+	public void scanServices(Consumer<ServiceInstance> consumer) {
+		scan("scanServices", ADMIN_SERVICE, serviceCodec, consumer);
+	}
+
+	public void scanServiceBindings(Consumer<ServiceInstanceBinding> consumer) {
+		scan("scanServiceBindings", ADMIN_BINDING, bindingCodec, consumer);
+	}
+
+	private <T> Map<String, AdminRecord<T>> batchGet(String operation, String set, RecordCodec<T> codec,
+			Collection<String> ids) {
+		ensureReady();
+		List<String> keys = new ArrayList<>(new LinkedHashSet<>(ids));
+		Map<String, AdminRecord<T>> result = new LinkedHashMap<>();
+		withBulkPermit(() -> {
+			for (int from = 0; from < keys.size(); from += config.policies.batchSize) {
+				List<String> chunk = keys.subList(from, Math.min(from + config.policies.batchSize, keys.size()));
+				Key[] batch = new Key[chunk.size()];
+				for (int i = 0; i < batch.length; i++) {
+					batch[i] = new Key(config.adminNamespace, set, chunk.get(i));
+				}
+				Record[] records = metrics.record(operation, () -> this.client.get(batchPolicy, batch));
+				for (int i = 0; i < records.length; i++) {
+					if (records[i] != null) {
+						result.put(chunk.get(i), new AdminRecord<T>(codec.decode(records[i]), records[i].generation));
+					}
+				}
+			}
+		});
+		return result;
+	}
+
+	private <T> void scan(String operation, String set, RecordCodec<T> codec, Consumer<T> consumer) {
+		ensureReady();
+		withBulkPermit(() -> metrics.record(operation, () -> {
+			for (Node node : this.client.getNodes()) {
+				this.client.scanNode(scanPolicy, node, config.adminNamespace, set,
+						(key, record) -> consumer.accept(codec.decode(record)));
+			}
+		}));
+	}
+
+	/*
+	 * Bulk reads are limited to maxConcurrentBulkRequests at a time across
+	 * all callers. Excess callers are turned away rather than queued.
+	 */
+	private void withBulkPermit(Runnable bulk) {
+		if (!bulkPermits.tryAcquire()) {
+			throw new AerospikeServiceUnavailableException(
+					"Too many bulk requests in progress. Please try again.", CONNECT_RETRY_SECONDS);
+		}
 		try {
-			Record record = this.client.get(null, key);
-			if (record != null) {
-				binding = (ServiceInstanceBinding) record.getValue(SERVICE_BINDING_BINNAME);
+			bulk.run();
+		} finally {
+			bulkPermits.release();
+		}
+	}
+
+	/*
+	 * Write all bins and read back the new generation in one round trip.
+	 */
+	private int writeRecord(WritePolicy policy, Key key, Bin[] bins) {
+		return this.client.operate(policy, key, putAndGetHeader(bins)).generation;
+	}
+
+	private CompletableFuture<Integer> writeRecordAsync(WritePolicy policy, Key key, Bin[] bins) {
+		Operation[] operations = putAndGetHeader(bins);
+		if (eventLoops == null) {
+			return supply(() -> this.client.operate(policy, key, operations).generation);
+		}
+		CompletableFuture<Integer> future = new CompletableFuture<>();
+		try {
+			this.client.operate(null, new RecordListener() {
+				@Override
+				public void onSuccess(Key key, Record record) {
+					future.complete(record.generation);
+				}
+
+				@Override
+				public void onFailure(AerospikeException ae) {
+					future.completeExceptionally(ae);
+				}
+			}, policy, key, operations);
+		} catch (AerospikeException ae) {
+			future.completeExceptionally(ae);
+		}
+		return future;
+	}
+
+	private static Operation[] putAndGetHeader(Bin[] bins) {
+		Operation[] operations = new Operation[bins.length + 1];
+		for (int i = 0; i < bins.length; i++) {
+			operations[i] = Operation.put(bins[i]);
+		}
+		operations[bins.length] = Operation.getHeader();
+		return operations;
+	}
+
+	/*
+	 * Reads and deletes go through the client's event loops when they are
+	 * configured. Otherwise the call is made synchronously and an already
+	 * completed future is returned, so callers compose the same way in both
+	 * modes.
+	 */
+	private CompletableFuture<Record> getAsync(Key key) {
+		if (eventLoops == null) {
+			return supply(() -> this.client.get(readPolicy, key));
+		}
+		CompletableFuture<Record> future = new CompletableFuture<>();
+		try {
+			this.client.get(null, new RecordListener() {
+				@Override
+				public void onSuccess(Key key, Record record) {
+					future.complete(record);
+				}
+
+				@Override
+				public void onFailure(AerospikeException ae) {
+					future.completeExceptionally(ae);
+				}
+			}, readPolicy, key);
+		} catch (AerospikeException ae) {
+			future.completeExceptionally(ae);
+		}
+		return future;
+	}
+
+	private CompletableFuture<Boolean> deleteAsync(Key key) {
+		if (eventLoops == null) {
+			return supply(() -> this.client.delete(writePolicy, key));
+		}
+		CompletableFuture<Boolean> future = new CompletableFuture<>();
+		try {
+			this.client.delete(null, new DeleteListener() {
+				@Override
+				public void onSuccess(Key key, boolean existed) {
+					future.complete(existed);
+				}
+
+				@Override
+				public void onFailure(AerospikeException ae) {
+					future.completeExceptionally(ae);
+				}
+			}, writePolicy, key);
+		} catch (AerospikeException ae) {
+			future.completeExceptionally(ae);
+		}
+		return future;
+	}
+
+	private static <T> CompletableFuture<T> supply(Supplier<T> call) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		try {
+			future.complete(call.get());
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * Wait for a future from one of the *Async methods, rethrowing its
+	 * failure unwrapped.
+	 */
+	public static <T> T await(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			Throwable cause = unwrap(e);
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * A write policy for conditional writes. Retries are turned off, since a
+	 * retried write that had already reached the server would fail its own
+	 * condition.
+	 */
+	private WritePolicy conditionalWritePolicy() {
+		WritePolicy policy = new WritePolicy(writePolicy);
+		policy.maxRetries = 0;
+		return policy;
+	}
+
+	/**
+	 * Translate a failed conditional write into the broker exception for it.
+	 * The cached copy of the record is dropped on any failure, since it is
+	 * likely out of date.
+	 */
+	private static <T> CompletableFuture<T> onResultCode(CompletableFuture<T> write, int resultCode,
+			ExpiringCache<String, ?> cache, String id, Supplier<? extends RuntimeException> exception) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		write.whenComplete((value, e) -> {
+			if (e == null) {
+				result.complete(value);
+				return;
+			}
+			cache.invalidate(id);
+			Throwable cause = unwrap(e);
+			if (cause instanceof AerospikeException && ((AerospikeException) cause).getResultCode() == resultCode) {
+				result.completeExceptionally(exception.get());
+			} else {
+				result.completeExceptionally(cause);
 			}
+		});
+		return result;
+	}
+
+	/*
+	 * A lookup that failed because the record is not there finds nothing.
+	 * Any other failure is passed on, so that a timeout is not taken for a
+	 * missing record and let a create go ahead.
+	 */
+	private <T> Optional<T> notFoundAsEmpty(String operation, Throwable e) {
+		Throwable cause = unwrap(e);
+		if (cause instanceof AerospikeException) {
+			if (((AerospikeException) cause).getResultCode() == ResultCode.KEY_NOT_FOUND_ERROR) {
+				return Optional.empty();
+			}
+			logger.error(operation + " AerospikeException: " + cause.getMessage());
+			throw new AerospikeServiceException("Could not read the broker's records. Please try again.");
+		}
+		throw e instanceof CompletionException ? (CompletionException) e : new CompletionException(e);
+	}
+
+	private static Throwable unwrap(Throwable e) {
+		return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+	}
+
+	/**
+	 * @return the generation of the operation's record after the write
+	 */
+	public int saveOperation(AsyncOperation operation) {
+		ensureReady();
+		Key key = new Key(config.adminNamespace, ADMIN_OPERATION, operation.getId());
+		WritePolicy policy = new WritePolicy(writePolicy);
+		policy.expiration = OPERATION_TTL_SECONDS;
+		return metrics.record("saveOperation", () -> writeRecord(policy, key, operationCodec.encode(operation)));
+	}
+
+	/**
+	 * Replace an operation, provided its record is still at the given
+	 * generation. Used to take over and renew operation leases.
+	 * @return the new generation, or empty if the record had changed
+	 */
+	public OptionalInt updateOperation(AsyncOperation operation, int generation) {
+		ensureReady();
+		Key key = new Key(config.adminNamespace, ADMIN_OPERATION, operation.getId());
+		WritePolicy policy = conditionalWritePolicy();
+		policy.expiration = OPERATION_TTL_SECONDS;
+		policy.recordExistsAction = RecordExistsAction.REPLACE_ONLY;
+		policy.generationPolicy = GenerationPolicy.EXPECT_GEN_EQUAL;
+		policy.generation = generation;
+		try {
+			return OptionalInt.of(metrics.record("updateOperation",
+					() -> writeRecord(policy, key, operationCodec.encode(operation))));
 		} catch (AerospikeException ae) {
-			logger.error("getServiceBinding AerospikeException: " + ae.getMessage());
+			if (ae.getResultCode() == ResultCode.GENERATION_ERROR
+					|| ae.getResultCode() == ResultCode.KEY_NOT_FOUND_ERROR) {
+				return OptionalInt.empty();
+			}
+			throw ae;
 		}
-		return binding;
 	}
 
-	public void deleteServiceBinding(ServiceInstanceBinding binding) {
-		if (binding != null) {
-			Key key = new Key(config.adminNamespace, ADMIN_BINDING, binding.getId());
+	/**
+	 * Pass every operation still marked in progress, on any replica, to the
+	 * consumer.
+	 */
+	public void queryOperationsInProgress(Consumer<AdminRecord<AsyncOperation>> consumer) {
+		ensureReady();
+		Statement statement = new Statement();
+		statement.setNamespace(config.adminNamespace);
+		statement.setSetName(ADMIN_OPERATION);
+		statement.setFilter(Filter.equal(AsyncOperationCodec.STATE_BIN, OperationState.IN_PROGRESS.name()));
+		query("queryOperations", statement, record -> consumer.accept(
+				new AdminRecord<AsyncOperation>(operationCodec.decode(record), record.generation)));
+	}
+
+	/**
+	 * Append an entry to the shared change log. The write is not waited for;
+	 * a lost entry only delays other replicas until their caches expire.
+	 */
+	public void appendChange(AdminChange change, int ttlSeconds) {
+		ensureReady();
+		Key key = new Key(config.adminNamespace, ADMIN_CHANGE, change.getChangeId());
+		WritePolicy policy = new WritePolicy(writePolicy);
+		policy.expiration = ttlSeconds;
+		metrics.recordAsync("appendChange", () -> writeRecordAsync(policy, key, changeCodec.encode(change)))
+				.whenComplete((generation, e) -> {
+					if (e != null) {
+						logger.warn("appendChange AerospikeException: " + unwrap(e).getMessage());
+					}
+				});
+	}
+
+	/**
+	 * Pass every change log entry with a timestamp of at least since to the
+	 * consumer.
+	 */
+	public void queryChanges(long since, Consumer<AdminChange> consumer) {
+		ensureReady();
+		Statement statement = new Statement();
+		statement.setNamespace(config.adminNamespace);
+		statement.setSetName(ADMIN_CHANGE);
+		statement.setFilter(Filter.range(AdminChangeCodec.TIMESTAMP_BIN, since, Long.MAX_VALUE));
+		query("queryChanges", statement, record -> consumer.accept(changeCodec.decode(record)));
+	}
+
+	private void query(String operation, Statement statement, Consumer<Record> consumer) {
+		metrics.record(operation, () -> {
+			RecordSet recordSet = this.client.query(queryPolicy, statement);
 			try {
-				this.client.delete(null, key);
-			} catch (AerospikeException ae) {
-				logger.error("deleteServiceBinding AerospikeException: " + ae.getMessage());
+				while (recordSet.next()) {
+					consumer.accept(recordSet.getRecord());
+				}
+			} finally {
+				recordSet.close();
+			}
+		});
+	}
+
+	public Optional<AdminRecord<AsyncOperation>> lookupOperation(String operationId) {
+		ensureReady();
+		Key key = new Key(config.adminNamespace, ADMIN_OPERATION, operationId);
+		try {
+			Record record = metrics.record("getOperation", () -> this.client.get(readPolicy, key));
+			if (record != null) {
+				return Optional.of(new AdminRecord<AsyncOperation>(operationCodec.decode(record), record.generation));
 			}
+		} catch (AerospikeException ae) {
+			logger.error("lookupOperation AerospikeException: " + ae.getMessage());
+		}
+		return Optional.empty();
+	}
+
+	public void deleteOperation(String operationId) {
+		ensureReady();
+		Key key = new Key(config.adminNamespace, ADMIN_OPERATION, operationId);
+		try {
+			metrics.record("deleteOperation", () -> this.client.delete(writePolicy, key));
+		} catch (AerospikeException ae) {
+			logger.error("deleteOperation AerospikeException: " + ae.getMessage());
 		}
 	}
 
+	public ExpiringCache<String, AdminRecord<ServiceInstance>> getServiceCache() {
+		return serviceCache;
+	}
+
+	public ExpiringCache<String, AdminRecord<ServiceInstanceBinding>> getServiceBindingCache() {
+		return bindingCache;
+	}
+
+	/**
+	 * Return the current namespace info. The map is immutable and is replaced
+	 * as a whole when the info changes, so callers can compare it by identity.
+	 */
 	public Map<String, Map<String, String>> getNamespaceInfo() {
+		ensureReady();
 		return namespaceInfo;
 	}
 
-	public String getHostname() {
-		return this.client.getNodes()[0].getHost().name;
+	/**
+	 * The cluster's hosts as seeds for an app, starting at a different node
+	 * on each call so that apps spread their first connections over the
+	 * cluster.
+	 */
+	public List<Host> getSeeds() {
+		ensureReady();
+		List<Host> seeds = topologySnapshot.seeds(this.client.getNodes());
+		if (seeds.isEmpty()) {
+			throw new AerospikeServiceUnavailableException(
+					"No Aerospike cluster nodes are available. Please try again.", CONNECT_RETRY_SECONDS);
+		}
+		return seeds;
+	}
+
+
+	private String formatUserRole(String prefix, String key) {
+		return (prefix + key.replaceAll("-", "")).substring(0, 30);
 	}
 
-	public int getPort() {
-		return this.client.getNodes()[0].getHost().port;
+	/**
+	 * The name of the database user createUser makes for a binding, or null
+	 * if the cluster does not use security.
+	 */
+	public String getUserName(String user) {
+		return isSecurityEnabled() ? formatUserRole("u", user) : null;
 	}
 
-	public String[] getHosts() {
-		Node[] nodes = this.client.getNodes();
-		String[] hosts = new String[nodes.length];
-		for (int i = 0; i < nodes.length; i++) {
-			hosts[i] = nodes[i].getHost().toString();
+	public String getRoleName(String user) {
+		return isSecurityEnabled() ? formatUserRole("r", user) : null;
+	}
+
+	public boolean isSecurityEnabled() {
+		return ENTERPRISE.equalsIgnoreCase(config.licenseType);
+	}
+
+	/**
+	 * The broker's own admin user, which must never be treated as a binding's
+	 * user.
+	 */
+	public String getAdminUser() {
+		return config.user;
+	}
+
+	public List<String> queryUserNames() {
+		ensureReady();
+		List<String> names = new ArrayList<>();
+		for (User user : metrics.record("queryUsers", () -> this.client.queryUsers(adminPolicy))) {
+			names.add(user.name);
 		}
+		return names;
+	}
 
-		return hosts;
+	public List<String> queryRoleNames() {
+		ensureReady();
+		List<String> names = new ArrayList<>();
+		for (Role role : metrics.record("queryRoles", () -> this.client.queryRoles(adminPolicy))) {
+			names.add(role.name);
+		}
+		return names;
 	}
 
-	private String formatUserRole(String prefix, String key) {
-		return (prefix + key.replaceAll("-", "")).substring(0, 30);
+	/**
+	 * Drop a user by its database name. A user that no longer exists counts
+	 * as dropped.
+	 */
+	public void dropUserByName(String userName) {
+		ensureReady();
+		metrics.record("dropUser", () -> retryExecutor.execute("dropUser " + userName,
+				() -> this.client.dropUser(adminPolicy, userName), ResultCode.INVALID_USER));
+		unmarkOwned(userName);
+	}
+
+	public void dropRoleByName(String roleName) {
+		ensureReady();
+		metrics.record("dropRole", () -> retryExecutor.execute("dropRole " + roleName,
+				() -> this.client.dropRole(adminPolicy, roleName), ResultCode.INVALID_ROLE));
+		unmarkOwned(roleName);
+	}
+
+	/**
+	 * The users and roles this broker has created and not yet dropped. Other
+	 * brokers sharing the cluster keep their own admin namespace, so their
+	 * users never show up here.
+	 */
+	public Set<String> queryOwnedNames() {
+		ensureReady();
+		Set<String> names = ConcurrentHashMap.newKeySet();
+		withBulkPermit(() -> metrics.record("scanOwnedNames", () -> {
+			for (Node node : this.client.getNodes()) {
+				this.client.scanNode(scanPolicy, node, config.adminNamespace, ADMIN_OWNED,
+						(key, record) -> names.add(record.getString(OWNED_NAME_BIN)));
+			}
+		}));
+		return names;
+	}
+
+	/*
+	 * Recorded before the user and role are created, so that a name is never
+	 * on the cluster without its marker.
+	 */
+	private void markOwned(String... names) {
+		for (String name : names) {
+			metrics.record("markOwned", () -> writeRecord(writePolicy,
+					new Key(config.adminNamespace, ADMIN_OWNED, name), new Bin[] {new Bin(OWNED_NAME_BIN, name)}));
+		}
+	}
+
+	private void unmarkOwned(String... names) {
+		for (String name : names) {
+			try {
+				metrics.record("unmarkOwned",
+						() -> this.client.delete(writePolicy, new Key(config.adminNamespace, ADMIN_OWNED, name)));
+			} catch (AerospikeException ae) {
+				// A stale marker only keeps the name in the orphan collector's view
+				logger.warn("Could not remove owned marker for " + name + ": " + ae.getMessage());
+			}
+		}
 	}
 
 	public String createUser(String user, String password, String namespace, String set) {
+		return createUser(formatUserRole("u", user), formatUserRole("r", user), password, namespace, set);
+	}
+
+	private String createUser(String newUserName, String roleName, String password, String namespace,
+			String set) {
+		ensureReady();
 		String userName = null;
 		if (ENTERPRISE.equalsIgnoreCase(config.licenseType)) {
-			Privilege p = new Privilege();
-			p.code = PrivilegeCode.READ_WRITE_UDF;
-			p.namespace = namespace;
-			p.setName = set;
-
-			String roleName = formatUserRole("r", user);
-			userName = formatUserRole("u", user);
-
-			int retries = 5;
-			boolean createdRole = false;
-			boolean createdUser = false;
-
-			do {
-				try {
-					if (!createdRole) {
-						this.client.createRole(null, roleName, Collections.singletonList(p));
-						createdRole = true;
-					}
-					if (!createdUser) {
-						this.client.createUser(null, userName, password, Collections.singletonList(roleName));
-						createdUser = true;
-					}
-				} catch (AerospikeException ae) {
-					logger.error("createRole/User AerospikeException: " + ae.getMessage());
-				}
-			} while (!(createdRole && createdUser) && retries-- > 0);
+			Privilege p = privilege(namespace, set);
 
-			if (!(createdRole && createdUser)) {
+			try {
+				markOwned(newUserName, roleName);
+				metrics.record("createUser", () -> {
+					retryExecutor.execute("createRole " + roleName,
+							() -> this.client.createRole(adminPolicy, roleName, Collections.singletonList(p)),
+							ResultCode.ROLE_ALREADY_EXISTS);
+					RetryExecutor.Outcome outcome = retryExecutor.execute("createUser " + newUserName,
+							() -> this.client.createUser(adminPolicy, newUserName, password,
+									Collections.singletonList(roleName)),
+							ResultCode.USER_ALREADY_EXISTS);
+					if (outcome == RetryExecutor.Outcome.ALREADY_APPLIED) {
+						// Left over from an earlier attempt; make sure the password we hand out works
+						retryExecutor.execute("changePassword " + newUserName,
+								() -> this.client.changePassword(adminPolicy, newUserName, password));
+					}
+				});
+			} catch (AerospikeException ae) {
+				logger.error("createRole/User AerospikeException: " + ae.getMessage());
 				throw new AerospikeServiceException("Could not bind service. Please try again.");
 			}
+			userName = newUserName;
 		}
 		return userName;
 	}
 
 	public void dropUser(String user) {
+		dropUser(formatUserRole("u", user), formatUserRole("r", user));
+	}
+
+	/**
+	 * Create the user and role of a binding with the names and password
+	 * stored with it, or change the user's password to the stored one if it
+	 * already exists. Bindings stored before the names were recorded fall
+	 * back to the names derived from the binding id.
+	 */
+	public String createBindingUser(ServiceInstanceBinding binding) {
+		Map<String, Object> credentials = binding.getCredentials();
+		Object storedUser = credentials.get("user");
+		String userName = storedUser instanceof String ? (String) storedUser : formatUserRole("u", binding.getId());
+		return createUser(userName, getBindingRoleName(binding), (String) credentials.get("password"),
+				(String) credentials.get("namespace"), (String) credentials.get("set"));
+	}
+
+	/**
+	 * Drop the user and role of a binding, using the names stored with it.
+	 * Bindings stored before the names were recorded fall back to the names
+	 * derived from the binding id.
+	 */
+	public void dropBindingUser(ServiceInstanceBinding binding) {
+		Object storedUser = binding.getCredentials() == null ? null : binding.getCredentials().get("user");
+		dropUser(storedUser instanceof String ? (String) storedUser : formatUserRole("u", binding.getId()),
+				getBindingRoleName(binding));
+	}
+
+	/**
+	 * The role of a binding: the stored name, or the name derived from the
+	 * binding id for bindings stored before the name was recorded.
+	 */
+	public String getBindingRoleName(ServiceInstanceBinding binding) {
+		return binding.getRoleName() != null ? binding.getRoleName() : formatUserRole("r", binding.getId());
+	}
+
+	/**
+	 * Set a role's read and write quotas in transactions per second, 0
+	 * meaning unlimited. Servers that do not support quotas, or do not have
+	 * them enabled, are only warned about once and the quotas are skipped. A
+	 * role that no longer exists has nothing left to limit.
+	 * @return true if the quotas were applied
+	 */
+	public boolean setRoleQuotas(String roleName, int readQuota, int writeQuota) {
+		ensureReady();
+		if (!isSecurityEnabled() || quotasUnsupported) {
+			return false;
+		}
+		try {
+			metrics.record("setQuotas", () -> retryExecutor.execute("setQuotas " + roleName,
+					() -> SetQuotasCommand.execute(this.client, adminPolicy, roleName, readQuota, writeQuota),
+					ResultCode.INVALID_ROLE));
+			return true;
+		} catch (AerospikeException ae) {
+			int resultCode = ae.getResultCode();
+			if (resultCode == ResultCode.INVALID_COMMAND || resultCode == SetQuotasCommand.QUOTAS_NOT_ENABLED) {
+				quotasUnsupported = true;
+				logger.warn("Role quotas are not applied, the cluster does not support them or does not have "
+						+ "them enabled (result code " + resultCode + ")");
+				return false;
+			}
+			logger.error("setQuotas AerospikeException: " + ae.getMessage());
+			throw new AerospikeServiceException("Could not set quotas. Please try again.");
+		}
+	}
+
+	/**
+	 * Whether the cluster has been found not to support role quotas, or not
+	 * to have them enabled.
+	 */
+	public boolean isQuotasUnsupported() {
+		return quotasUnsupported;
+	}
+
+	/**
+	 * The quotas last pushed to the bindings of a namespace.
+	 */
+	public Optional<PlanQuotas> lookupPlanQuotas(String namespace) {
+		ensureReady();
+		Key key = new Key(config.adminNamespace, ADMIN_QUOTA, namespace);
+		Record record = metrics.record("getPlanQuotas", () -> this.client.get(readPolicy, key));
+		return record == null ? Optional.empty() : Optional.of(quotaCodec.decode(record));
+	}
+
+	public void savePlanQuotas(PlanQuotas quotas) {
+		ensureReady();
+		Key key = new Key(config.adminNamespace, ADMIN_QUOTA, quotas.getNamespace());
+		metrics.record("savePlanQuotas", () -> writeRecord(writePolicy, key, quotaCodec.encode(quotas)));
+	}
+
+	private void dropUser(String userName, String roleName) {
+		ensureReady();
 		if (ENTERPRISE.equalsIgnoreCase(config.licenseType)) {
-			boolean droppedUser = false;
-			boolean droppedRole = false;
-			int retries = 5;
-			String userName = formatUserRole("u", user);
-			String roleName = formatUserRole("r", user);
-
-			do {
-				try {
-					if (!droppedUser) {
-						this.client.dropUser(null, userName);
-						droppedUser = true;
-					}
-					if (!droppedRole) {
-						this.client.dropRole(null, roleName);
-						droppedRole = true;
-					}
-				} catch (AerospikeException ae) {
-					logger.error("dropRole/User AerospikeException: " + ae.getMessage());
-				}
-			} while (!(droppedRole && droppedUser) && retries-- > 0);
+			try {
+				metrics.record("dropUser", () -> {
+					retryExecutor.execute("dropUser " + userName,
+							() -> this.client.dropUser(adminPolicy, userName),
+							ResultCode.INVALID_USER);
+					retryExecutor.execute("dropRole " + roleName,
+							() -> this.client.dropRole(adminPolicy, roleName),
+							ResultCode.INVALID_ROLE);
+				});
+			} catch (AerospikeException ae) {
+				logger.error("dropRole/User AerospikeException: " + ae.getMessage());
+				throw new AerospikeServiceException("Could not unbind service. Please try again.");
+			}
+			unmarkOwned(userName, roleName);
+		}
+	}
+
+	/**
+	 * Read the credential pool slots of a namespace in one batch. Empty slots
+	 * are left out of the result.
+	 */
+	public Map<Integer, AdminRecord<PooledCredential>> getPoolEntries(String namespace, int size) {
+		ensureReady();
+		Key[] keys = new Key[size];
+		for (int slot = 0; slot < size; slot++) {
+			keys[slot] = poolKey(namespace, slot);
+		}
+		Record[] records = metrics.record("getPoolEntries", () -> this.client.get(batchPolicy, keys));
+		Map<Integer, AdminRecord<PooledCredential>> entries = new LinkedHashMap<>();
+		for (int slot = 0; slot < size; slot++) {
+			if (records[slot] != null) {
+				entries.put(slot, new AdminRecord<PooledCredential>(poolCodec.decode(records[slot]),
+						records[slot].generation));
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Take a pool entry by deleting it, provided it has not changed since it
+	 * was read. Only one caller can succeed for a given generation.
+	 * @return true if the entry now belongs to the caller
+	 */
+	public boolean claimPoolEntry(String namespace, int slot, int generation) {
+		ensureReady();
+		WritePolicy policy = conditionalWritePolicy();
+		policy.generationPolicy = GenerationPolicy.EXPECT_GEN_EQUAL;
+		policy.generation = generation;
+		try {
+			return metrics.record("claimPoolEntry", () -> this.client.delete(policy, poolKey(namespace, slot)));
+		} catch (AerospikeException ae) {
+			if (ae.getResultCode() == ResultCode.GENERATION_ERROR) {
+				return false;
+			}
+			throw ae;
+		}
+	}
+
+	/**
+	 * Create a user and role for the pool and store them in an empty slot.
+	 * If the slot was filled concurrently, the new user and role are dropped
+	 * again.
+	 */
+	public void createPoolEntry(String namespace, int slot) {
+		ensureReady();
+		String suffix = UUID.randomUUID().toString().replaceAll("-", "").substring(0, 28);
+		PooledCredential credential = new PooledCredential(namespace, POOL_USER_PREFIX + suffix,
+				POOL_ROLE_PREFIX + suffix, RandomStringUtils.randomAlphabetic(16));
+		createUser(credential.getUserName(), credential.getRoleName(), credential.getPassword(), namespace, null);
+
+		WritePolicy policy = conditionalWritePolicy();
+		policy.recordExistsAction = RecordExistsAction.CREATE_ONLY;
+		try {
+			metrics.record("createPoolEntry",
+					() -> writeRecord(policy, poolKey(namespace, slot), poolCodec.encode(credential)));
+		} catch (AerospikeException ae) {
+			dropUser(credential.getUserName(), credential.getRoleName());
+			if (ae.getResultCode() != ResultCode.KEY_EXISTS_ERROR) {
+				throw ae;
+			}
 		}
 	}
+
+	/**
+	 * Narrow a role from its whole namespace to a single set. The new
+	 * privilege is granted before the old one is revoked, so the role is
+	 * never left without access.
+	 */
+	public void rescopeRole(String roleName, String namespace, String set) {
+		ensureReady();
+		Privilege namespacePrivilege = privilege(namespace, null);
+		Privilege setPrivilege = privilege(namespace, set);
+		metrics.record("rescopeRole", () -> {
+			retryExecutor.execute("grantPrivileges " + roleName, () -> this.client.grantPrivileges(adminPolicy,
+					roleName, Collections.singletonList(setPrivilege)));
+			retryExecutor.execute("revokePrivileges " + roleName, () -> this.client.revokePrivileges(adminPolicy,
+					roleName, Collections.singletonList(namespacePrivilege)));
+		});
+	}
+
+	private static Privilege privilege(String namespace, String set) {
+		Privilege p = new Privilege();
+		p.code = PrivilegeCode.READ_WRITE_UDF;
+		p.namespace = namespace;
+		p.setName = set;
+		return p;
+	}
+
+	private Key poolKey(String namespace, int slot) {
+		return new Key(config.adminNamespace, ADMIN_POOL, namespace + "/" + slot);
+	}
+
+	public RetryExecutor getRetryExecutor() {
+		return retryExecutor;
+	}
 }
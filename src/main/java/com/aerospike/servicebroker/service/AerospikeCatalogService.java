@@ -23,14 +23,22 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.servicebroker.model.Catalog;
 import org.springframework.cloud.servicebroker.model.Plan;
 import org.springframework.cloud.servicebroker.model.ServiceDefinition;
 import org.springframework.cloud.servicebroker.service.CatalogService;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import com.aerospike.servicebroker.config.AerospikeCatalogConfig;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
 
 @Service
 public class AerospikeCatalogService implements CatalogService {
@@ -42,9 +50,16 @@ public class AerospikeCatalogService implements CatalogService {
 	private final String serviceName;
 	private final String serviceDescription;
 	
+	private Logger logger = LoggerFactory.getLogger(AerospikeCatalogService.class);
+
 	@Autowired
 	AerospikeAdminService adminService;
 	
+	@Autowired(required = false)
+	ObjectMapper objectMapper = new ObjectMapper();
+	
+	private volatile CatalogSnapshot snapshot;
+	
 	@Autowired
 	public AerospikeCatalogService(AerospikeCatalogConfig config) {
 		this.serviceName = config.serviceName;
@@ -54,23 +69,48 @@ public class AerospikeCatalogService implements CatalogService {
 	
 	@Override
 	public Catalog getCatalog() {
-		return new Catalog(Collections.singletonList(getServiceDefinition()));
+		return getSnapshot().catalog;
 	}
 
 	@Override
 	public ServiceDefinition getServiceDefinition(String serviceId) {
-		return getServiceDefinition();
+		return getSnapshot().serviceDefinition;
+	}
+	
+	@EventListener
+	public void onNamespaceInfoChanged(NamespaceInfoChangedEvent event) {
+		this.snapshot = buildSnapshot(event.getNamespaceInfo());
+	}
+	
+	/*
+	 * The catalog only depends on the namespace info, so it is built once and
+	 * rebuilt when a change event arrives. The admin service replaces its
+	 * namespace map as a whole on change, so an identity check is enough to
+	 * catch a change that raced with the event.
+	 */
+	private CatalogSnapshot getSnapshot() {
+		Map<String, Map<String, String>> namespaces = adminService.getNamespaceInfo();
+		CatalogSnapshot current = this.snapshot;
+		if (current == null || !current.isBuiltFrom(namespaces)) {
+			current = buildSnapshot(namespaces);
+			this.snapshot = current;
+		}
+		return current;
+	}
+	
+	private CatalogSnapshot buildSnapshot(Map<String, Map<String, String>> namespaces) {
+		return new CatalogSnapshot(namespaces, getServiceDefinition(namespaces));
 	}
 	
-	private ServiceDefinition getServiceDefinition() {
+	private ServiceDefinition getServiceDefinition(Map<String, Map<String, String>> namespaces) {
 		return new ServiceDefinition(
 				this.serviceId,
 				this.serviceName,
 				this.serviceDescription,
 				true,
 				false,
-				getPlans(),					
-				Arrays.asList("aerospike", "nosql"),
+				getPlans(namespaces),
+				Collections.unmodifiableList(Arrays.asList("aerospike", "nosql")),
 				getServiceDefinitionMetadata(),
 				null,
 				null);
@@ -78,9 +118,9 @@ public class AerospikeCatalogService implements CatalogService {
 	
 	private Map<String,Object> getPlanMetadata(Map<String, String> info) {
 		Map<String, Object> planMetadata = new HashMap<>();
-		planMetadata.put("costs", Collections.singletonList(new HashMap<>()));
+		planMetadata.put("costs", Collections.singletonList(Collections.emptyMap()));
 		planMetadata.put("bullets", getBullets(info));
-		return planMetadata;
+		return Collections.unmodifiableMap(planMetadata);
 	}
 	
 	private String getDescription(Map<String, String> info) {
@@ -89,8 +129,7 @@ public class AerospikeCatalogService implements CatalogService {
 				", Replication Factor:" + info.get(REPLICATION_FACTOR_KEY);
 	}
 	
-	private List<Plan> getPlans() {
-		Map<String, Map<String,String>> namespaces = adminService.getNamespaceInfo();
+	private List<Plan> getPlans(Map<String, Map<String,String>> namespaces) {
 		List<Plan> plans = new ArrayList<Plan>();
 		
 		for (String ns : namespaces.keySet()) {
@@ -100,7 +139,7 @@ public class AerospikeCatalogService implements CatalogService {
 					getDescription(info),
 					getPlanMetadata(info), true));
 		}
-		return plans;
+		return Collections.unmodifiableList(plans);
 	}
 	
 	private Map<String, Object> getServiceDefinitionMetadata() {
@@ -111,12 +150,57 @@ public class AerospikeCatalogService implements CatalogService {
 		sdMetadata.put("providerDisplayName", "Aerospike");
 		sdMetadata.put("documentationUrl", "https://github.com/aerospike/aerospike-service-broker");
 		sdMetadata.put("supportUrl", "https://github.com/aerospike/aerospike-service-broker");
-		return sdMetadata;
+		return Collections.unmodifiableMap(sdMetadata);
 	}
 	
 	private List<String> getBullets(Map<String, String> info) {
-		return Arrays.asList("Storage: " + info.get(STORAGE_ENGINE_KEY), 
+		return Collections.unmodifiableList(Arrays.asList("Storage: " + info.get(STORAGE_ENGINE_KEY), 
 				"Size: " + info.get(MEMORY_SIZE_KEY),
-				"Replication Factor: " + info.get(REPLICATION_FACTOR_KEY));
+				"Replication Factor: " + info.get(REPLICATION_FACTOR_KEY)));
+	}
+	
+	private final class CatalogSnapshot {
+		private final Map<String, Map<String, String>> namespaces;
+		private final ServiceDefinition serviceDefinition;
+		private final Catalog catalog;
+		
+		CatalogSnapshot(Map<String, Map<String, String>> namespaces, ServiceDefinition serviceDefinition) {
+			this.namespaces = namespaces;
+			this.serviceDefinition = serviceDefinition;
+			this.catalog = serialize(new Catalog(Collections.singletonList(serviceDefinition)));
+		}
+		
+		boolean isBuiltFrom(Map<String, Map<String, String>> namespaces) {
+			return this.namespaces == namespaces;
+		}
+		
+		private Catalog serialize(Catalog catalog) {
+			try {
+				SerializedString json = new SerializedString(objectMapper.writeValueAsString(catalog));
+				json.asUnquotedUTF8();
+				return new SerializedCatalog(catalog.getServiceDefinitions(), json);
+			} catch (JsonProcessingException e) {
+				logger.error("Could not pre-serialize catalog: " + e.getMessage());
+				return catalog;
+			}
+		}
+	}
+	
+	/*
+	 * A catalog that writes its JSON from bytes encoded when the snapshot was
+	 * built instead of walking the object graph on every request.
+	 */
+	static final class SerializedCatalog extends Catalog {
+		private final RawValue json;
+		
+		SerializedCatalog(List<ServiceDefinition> serviceDefinitions, SerializedString json) {
+			super(serviceDefinitions);
+			this.json = new RawValue(json);
+		}
+		
+		@JsonValue
+		RawValue toJson() {
+			return json;
+		}
 	}
 }
@@ -16,8 +16,15 @@
  */
 package com.aerospike.servicebroker.service;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.PostConstruct;
 
 import org.apache.commons.lang3.RandomStringUtils;
 import org.slf4j.Logger;
@@ -25,6 +32,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.servicebroker.exception.ServiceInstanceBindingDoesNotExistException;
 import org.springframework.cloud.servicebroker.exception.ServiceInstanceBindingExistsException;
+import org.springframework.cloud.servicebroker.exception.ServiceBrokerInvalidParametersException;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceDoesNotExistException;
 import org.springframework.cloud.servicebroker.model.CreateServiceInstanceAppBindingResponse;
 import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
 import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingResponse;
@@ -32,15 +41,42 @@ import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceBindin
 import org.springframework.cloud.servicebroker.service.ServiceInstanceBindingService;
 import org.springframework.stereotype.Service;
 
+import com.aerospike.client.Host;
+import com.aerospike.servicebroker.config.AerospikeClientHintsConfig;
+import com.aerospike.servicebroker.config.AerospikeQuotaConfig;
+import com.aerospike.servicebroker.exception.AerospikeServiceUnavailableException;
+import com.aerospike.servicebroker.model.AsyncOperation;
+import com.aerospike.servicebroker.model.ClusterNode;
+import com.aerospike.servicebroker.model.ClusterTopology;
+import com.aerospike.servicebroker.model.PooledCredential;
 import com.aerospike.servicebroker.model.ServiceInstance;
 import com.aerospike.servicebroker.model.ServiceInstanceBinding;
 
 @Service
 public class AerospikeServiceInstanceBindingService implements ServiceInstanceBindingService {
 	private static final String SETNAME_KEY = "setname";
+	private static final String READ_QUOTA_KEY = "read_quota";
+	private static final String WRITE_QUOTA_KEY = "write_quota";
+	private static final String STRONG_CONSISTENCY_KEY = "strong-consistency";
+	private static final int RETRY_SECONDS = 5;
 	
 	@Autowired
 	private AerospikeAdminService adminService;
+
+	@Autowired
+	private AsyncOperationService asyncService;
+
+	@Autowired
+	private CredentialPool credentialPool;
+
+	@Autowired
+	private AdmissionController admission;
+
+	@Autowired
+	private AerospikeQuotaConfig quotaConfig;
+
+	@Autowired
+	private AerospikeClientHintsConfig clientHints;
 	
 	private Logger logger = LoggerFactory.getLogger(AerospikeServiceInstanceBindingService.class);
 
@@ -52,9 +88,16 @@ public class AerospikeServiceInstanceBindingService implements ServiceInstanceBi
 		String serviceInstanceId = request.getServiceInstanceId();
 		
 		logger.info("Creating Binding ID: " + bindingId);
-		
-		if (this.adminService.serviceBindingExists(bindingId)) {
-			throw new ServiceInstanceBindingExistsException(bindingId, bindingId);
+
+		// Both reads are issued before waiting on either
+		CompletableFuture<Optional<AdminRecord<ServiceInstanceBinding>>> existing =
+				this.adminService.lookupServiceBindingAsync(bindingId);
+		CompletableFuture<Optional<AdminRecord<ServiceInstance>>> instance =
+				this.adminService.lookupServiceAsync(serviceInstanceId);
+
+		// Cheap early rejection; the create-only write below is what makes it safe
+		if (AerospikeAdminService.await(existing).isPresent()) {
+			throw new ServiceInstanceBindingExistsException(serviceInstanceId, bindingId);
 		}
 				
 		String setName = null;
@@ -63,26 +106,77 @@ public class AerospikeServiceInstanceBindingService implements ServiceInstanceBi
 			setName = (String)request.getParameters().get(SETNAME_KEY);
 		}
 		
-		ServiceInstance si = this.adminService.getService(request.getServiceInstanceId());
-		String password = RandomStringUtils.randomAlphabetic(16);
+		ServiceInstance si = AerospikeAdminService.await(instance)
+				.map(AdminRecord::getValue)
+				.orElseThrow(() -> new ServiceInstanceDoesNotExistException(serviceInstanceId));
+		this.admission.admit(si.getOrganizationGuid());
+		String namespace = si.getNamespace();
+		int readQuota = quotaParameter(request.getParameters(), READ_QUOTA_KEY,
+				this.quotaConfig.getReadQuota(namespace));
+		int writeQuota = quotaParameter(request.getParameters(), WRITE_QUOTA_KEY,
+				this.quotaConfig.getWriteQuota(namespace));
 		
 		Map<String, Object> credentials = new HashMap<String, Object>();
 		if (setName != null) {
 			credentials.put("set", setName);
 		}
 		credentials.put("namespace", si.getNamespace());
-		credentials.put("password", password);
-		credentials.put("hostname", adminService.getHostname());
-		credentials.put("port", adminService.getPort());
-		credentials.put("hosts", adminService.getHosts());
-		
-		String userName = this.adminService.createUser(request.getBindingId(), password, si.getNamespace(), setName);
-		credentials.put("user", userName);
-		
+		List<Host> seeds = adminService.getSeeds();
+		String[] hosts = new String[seeds.size()];
+		for (int i = 0; i < hosts.length; i++) {
+			hosts[i] = seeds.get(i).toString();
+		}
+		credentials.put("hostname", seeds.get(0).name);
+		credentials.put("port", seeds.get(0).port);
+		credentials.put("hosts", hosts);
+		addTopology(credentials, namespace);
+
+		// Claimed only once nothing else can fail before the claimed user is
+		// either bound or dropped again
+		String pooledSet = setName;
+		Optional<PooledCredential> pooled = this.admission.withSecurityPermit(
+				() -> this.credentialPool.claim(namespace, pooledSet));
+		credentials.put("password", pooled.map(PooledCredential::getPassword)
+				.orElseGet(() -> RandomStringUtils.randomAlphabetic(16)));
+
+		if (pooled.isPresent()) {
+			// The user already exists, so there is nothing more to create
+			credentials.put("user", pooled.get().getUserName());
+			ServiceInstanceBinding binding = new ServiceInstanceBinding(bindingId, serviceInstanceId,
+					credentials, null, request.getBoundAppGuid(), pooled.get().getRoleName())
+					.withQuotas(readQuota, writeQuota);
+			try {
+				this.admission.withSecurityPermit(() -> applyQuotas(binding));
+				this.adminService.createServiceBinding(binding);
+			} catch (RuntimeException e) {
+				// A concurrent bind with the same id won, or the quotas could
+				// not be set; either way the claimed user is not needed
+				this.adminService.dropBindingUser(binding);
+				throw e;
+			}
+			return new CreateServiceInstanceAppBindingResponse().withCredentials(credentials);
+		}
+
+		// Record the binding before creating its user. Only one of several
+		// concurrent binds with the same id can create the record, so the
+		// others are rejected before they touch the user or its password.
+		credentials.put("user", this.adminService.getUserName(bindingId));
 		ServiceInstanceBinding binding = new ServiceInstanceBinding(bindingId, serviceInstanceId, credentials,
-				null, request.getBoundAppGuid());
+				null, request.getBoundAppGuid()).withQuotas(readQuota, writeQuota);
 		this.adminService.createServiceBinding(binding);
 
+		// Always synchronous, even with async operations enabled: the service
+		// broker API has no async bind, so the credentials handed out must
+		// already work
+		try {
+			this.admission.withSecurityPermit(() -> createBindingUser(binding));
+		} catch (RuntimeException e) {
+			// Drop a user created before the quotas failed and release the
+			// binding id so that the bind can be retried
+			releaseBinding(binding);
+			throw e;
+		}
+
 		return new CreateServiceInstanceAppBindingResponse().withCredentials(credentials);
 	}
 
@@ -90,13 +184,157 @@ public class AerospikeServiceInstanceBindingService implements ServiceInstanceBi
 	public void deleteServiceInstanceBinding(DeleteServiceInstanceBindingRequest request) {
 		String bindingId = request.getBindingId();
 		
-		if (!this.adminService.serviceBindingExists(bindingId)) {
-			throw new ServiceInstanceBindingDoesNotExistException(bindingId);
+		ServiceInstanceBinding binding = this.adminService.lookupServiceBinding(bindingId)
+				.map(AdminRecord::getValue)
+				.orElseThrow(() -> new ServiceInstanceBindingDoesNotExistException(bindingId));
+		// Counted against the instance's org like the bind; the instance may
+		// already be gone, and then there is no org to count against
+		this.adminService.lookupService(request.getServiceInstanceId())
+				.ifPresent(instance -> this.admission.admit(instance.getValue().getOrganizationGuid()));
+
+		if (this.asyncService.isEnabled()) {
+			if (this.asyncService.isInProgress(bindingId)) {
+				throw new AerospikeServiceUnavailableException(
+						"An operation on binding " + bindingId + " is in progress. Please try again.", RETRY_SECONDS);
+			}
+			this.asyncService.submit(bindingId, AsyncOperation.Type.DELETE_BINDING,
+					() -> this.admission.withSecurityPermit(() -> deleteBinding(binding)));
+			return;
 		}
 		
-		this.adminService.dropUser(bindingId);
-		
-		ServiceInstanceBinding binding = this.adminService.getServiceBinding(bindingId);
+		this.admission.withSecurityPermit(() -> deleteBinding(binding));
+	}
+
+	/*
+	 * Lets apps connect the way the cluster is laid out: the cluster name to
+	 * check, each node's TLS name, alternate address and rack, and the
+	 * client settings that suit the plan. Apps in a rack-aware namespace can
+	 * then read from the nodes of their own rack.
+	 */
+	private void addTopology(Map<String, Object> credentials, String namespace) {
+		ClusterTopology topology = this.adminService.getTopology();
+		if (topology.getClusterName() != null) {
+			credentials.put("cluster_name", topology.getClusterName());
+		}
+		List<Map<String, Object>> nodes = new ArrayList<>();
+		for (ClusterNode node : topology.getNodes()) {
+			Map<String, Object> entry = new LinkedHashMap<>();
+			entry.put("name", node.getName());
+			entry.put("host", node.getHost());
+			entry.put("port", node.getPort());
+			if (node.getTlsName() != null) {
+				entry.put("tls_name", node.getTlsName());
+			}
+			if (node.getAlternateHost() != null) {
+				entry.put("alternate_host", node.getAlternateHost());
+				entry.put("alternate_port", node.getAlternatePort());
+			}
+			if (node.getRackId(namespace) != null) {
+				entry.put("rack_id", node.getRackId(namespace));
+			}
+			nodes.add(entry);
+		}
+		if (!nodes.isEmpty()) {
+			credentials.put("nodes", nodes);
+		}
+
+		boolean rackAware = topology.isRackAware(namespace);
+		Map<String, Object> policy = new LinkedHashMap<>();
+		policy.put("rack_aware", rackAware);
+		policy.put("replica", rackAware ? "PREFER_RACK" : "SEQUENCE");
+		policy.put("max_conns_per_node", this.clientHints.getMaxConnsPerNode(namespace));
+		Map<String, String> namespaceInfo = this.adminService.getNamespaceInfo().get(namespace);
+		if (namespaceInfo != null && "true".equals(namespaceInfo.get(STRONG_CONSISTENCY_KEY))) {
+			policy.put("read_mode_sc", "SESSION");
+		}
+		credentials.put("client_policy", policy);
+	}
+
+	/*
+	 * Undo a bind whose user could not be created: drop whatever part of the
+	 * user and role exists, then free the binding id.
+	 */
+	private void releaseBinding(ServiceInstanceBinding binding) {
+		try {
+			this.adminService.dropBindingUser(binding);
+		} catch (RuntimeException e) {
+			logger.warn("Could not drop user of binding " + binding.getId() + ": " + e.getMessage());
+		}
 		this.adminService.deleteServiceBinding(binding);
 	}
+
+	private void createBindingUser(ServiceInstanceBinding binding) {
+		Map<String, Object> credentials = binding.getCredentials();
+		this.adminService.createUser(binding.getId(), (String) credentials.get("password"),
+				(String) credentials.get("namespace"), (String) credentials.get("set"));
+		applyQuotas(binding);
+	}
+
+	/*
+	 * The role gets the plan's quotas, or lower ones if the binding asked for
+	 * them. QuotaReconciler pushes later changes to the plan's quotas.
+	 */
+	private void applyQuotas(ServiceInstanceBinding binding) {
+		String namespace = (String) binding.getCredentials().get("namespace");
+		int readQuota = AerospikeQuotaConfig.effective(this.quotaConfig.getReadQuota(namespace),
+				binding.getReadQuota());
+		int writeQuota = AerospikeQuotaConfig.effective(this.quotaConfig.getWriteQuota(namespace),
+				binding.getWriteQuota());
+		if (readQuota > 0 || writeQuota > 0) {
+			this.adminService.setRoleQuotas(this.adminService.getBindingRoleName(binding), readQuota, writeQuota);
+		}
+	}
+
+	/*
+	 * A quota asked for at bind time, as a whole number of transactions per
+	 * second no higher than the plan allows. 0 (or no parameter) means the
+	 * plan's quota.
+	 */
+	static int quotaParameter(Map<String, Object> parameters, String key, int planQuota) {
+		Object value = parameters == null ? null : parameters.get(key);
+		if (value == null) {
+			return 0;
+		}
+		int quota;
+		try {
+			if (value instanceof Integer || value instanceof Long) {
+				quota = Math.toIntExact(((Number) value).longValue());
+			} else if (value instanceof String) {
+				quota = Integer.parseInt((String) value);
+			} else {
+				throw new NumberFormatException();
+			}
+		} catch (ArithmeticException | NumberFormatException e) {
+			throw new ServiceBrokerInvalidParametersException(key + " must be a whole number");
+		}
+		if (quota < 0) {
+			throw new ServiceBrokerInvalidParametersException(key + " must not be negative");
+		}
+		if (planQuota > 0 && quota > planQuota) {
+			throw new ServiceBrokerInvalidParametersException(
+					key + " must not be higher than the plan's quota of " + planQuota);
+		}
+		return quota;
+	}
+
+	private void deleteBinding(ServiceInstanceBinding binding) {
+		this.adminService.dropBindingUser(binding);
+		this.adminService.deleteServiceBinding(binding);
+	}
+
+	/*
+	 * Operations taken over from another broker replica are resumed from the
+	 * binding record, which holds everything createUser needs. Binds are no
+	 * longer run async, but one left in progress by an older broker still
+	 * gets its user.
+	 */
+	@PostConstruct
+	public void registerResumers() {
+		this.asyncService.registerResumer(AsyncOperation.Type.CREATE_BINDING, bindingId ->
+				this.adminService.lookupServiceBinding(bindingId).map(AdminRecord::getValue)
+						.ifPresent(binding -> this.admission.withSecurityPermit(() -> createBindingUser(binding))));
+		this.asyncService.registerResumer(AsyncOperation.Type.DELETE_BINDING, bindingId ->
+				this.adminService.lookupServiceBinding(bindingId).map(AdminRecord::getValue)
+						.ifPresent(binding -> this.admission.withSecurityPermit(() -> deleteBinding(binding))));
+	}
 }
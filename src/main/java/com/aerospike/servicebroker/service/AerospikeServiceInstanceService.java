@@ -16,6 +16,12 @@
  */
 package com.aerospike.servicebroker.service;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.PostConstruct;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,33 +39,53 @@ import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRespon
 import org.springframework.cloud.servicebroker.service.ServiceInstanceService;
 import org.springframework.stereotype.Service;
 
+import com.aerospike.servicebroker.config.AerospikeDeprovisionConfig;
 import com.aerospike.servicebroker.exception.AerospikeServiceException;
+import com.aerospike.servicebroker.exception.AerospikeServiceUnavailableException;
+import com.aerospike.servicebroker.model.AsyncOperation;
 import com.aerospike.servicebroker.model.ServiceInstance;
+import com.aerospike.servicebroker.model.ServiceInstanceBinding;
 
 @Service
 public class AerospikeServiceInstanceService implements ServiceInstanceService{
+	private static final int RETRY_SECONDS = 5;
 	
 	@Autowired
 	private AerospikeAdminService adminService;
 
+	@Autowired
+	private AsyncOperationService asyncService;
+
+	@Autowired
+	private AerospikeDeprovisionConfig deprovisionConfig;
+
+	@Autowired
+	private AdmissionController admission;
+
 	private Logger logger = LoggerFactory.getLogger(AerospikeServiceInstanceService.class);
 
 	@Override
 	public CreateServiceInstanceResponse createServiceInstance(CreateServiceInstanceRequest request) {
 		String serviceInstanceId = request.getServiceInstanceId();
 		logger.info("Create Service Instance: " + serviceInstanceId);
-		
-		if (this.adminService.serviceExists(serviceInstanceId)) {
+		this.admission.admit(request.getOrganizationGuid());
+
+		CompletableFuture<Optional<AdminRecord<ServiceInstance>>> existing =
+				this.adminService.lookupServiceAsync(serviceInstanceId);
+		boolean licenseValid = this.adminService.validateLicense();
+
+		if (AerospikeAdminService.await(existing).isPresent()) {
 			throw new ServiceInstanceExistsException(serviceInstanceId, request.getServiceDefinitionId());
 		}
 		
-		if (!this.adminService.validateLicense()) {
+		if (!licenseValid) {
 			throw new AerospikeServiceException(
 				"User and password could not be validated. " +
 			    "Please ensure your Aerospike Enterprise Edition user and password have been entered correctly in the tile.");
 		}
 		
 		ServiceInstance instance = new ServiceInstance(request, request.getPlanId());
+		// Fails with ServiceInstanceExistsException if a concurrent request got there first
 		this.adminService.createService(instance);
 		
 		return new CreateServiceInstanceResponse();
@@ -67,7 +93,14 @@ public class AerospikeServiceInstanceService implements ServiceInstanceService{
 
 	@Override
 	public GetLastServiceOperationResponse getLastOperation(GetLastServiceOperationRequest request) {
-		return new GetLastServiceOperationResponse().withOperationState(OperationState.SUCCEEDED);
+		Optional<AsyncOperation> operation = this.asyncService.getOperation(request.getServiceInstanceId());
+		if (!operation.isPresent()) {
+			return new GetLastServiceOperationResponse().withOperationState(OperationState.SUCCEEDED);
+		}
+		return new GetLastServiceOperationResponse()
+				.withOperationState(operation.get().getState())
+				.withDescription(operation.get().getDescription())
+				.withDeleteOperation(operation.get().getType() == AsyncOperation.Type.DELETE_INSTANCE);
 	}
 
 	@Override
@@ -75,27 +108,60 @@ public class AerospikeServiceInstanceService implements ServiceInstanceService{
 		String serviceInstanceId = request.getServiceInstanceId();
 		logger.info("Deleting Service Instance: " + serviceInstanceId);
 		
-		if (!this.adminService.serviceExists(serviceInstanceId)) {
-			throw new ServiceInstanceDoesNotExistException(serviceInstanceId);
+		ServiceInstance instance = this.adminService.lookupService(serviceInstanceId)
+				.map(AdminRecord::getValue)
+				.orElseThrow(() -> new ServiceInstanceDoesNotExistException(serviceInstanceId));
+		this.admission.admit(instance.getOrganizationGuid());
+		if (this.asyncService.isEnabled() && this.asyncService.isInProgress(serviceInstanceId)) {
+			throw new AerospikeServiceUnavailableException("An operation on service instance " + serviceInstanceId
+					+ " is in progress. Please try again.", RETRY_SECONDS);
 		}
 
-		ServiceInstance instance = this.adminService.getService(serviceInstanceId);
-		this.adminService.deleteService(instance);
+		List<ServiceInstanceBinding> bindings = this.adminService.getServiceBindingsForInstance(serviceInstanceId);
+		if (!bindings.isEmpty() && !this.deprovisionConfig.cascadeBindings) {
+			throw new AerospikeServiceException("Service instance " + serviceInstanceId + " still has "
+					+ bindings.size() + " binding(s). Please unbind them before deleting the service.");
+		}
+
+		if (request.isAsyncAccepted() && this.asyncService.isEnabled()) {
+			this.asyncService.submit(serviceInstanceId, AsyncOperation.Type.DELETE_INSTANCE,
+					() -> this.admission.withSecurityPermit(
+							() -> deleteInstanceAndBindings(instance, bindings)));
+			return new DeleteServiceInstanceResponse().withAsync(true);
+		}
+		this.admission.withSecurityPermit(() -> deleteInstanceAndBindings(instance, bindings));
 		
 		return new DeleteServiceInstanceResponse();
 	}
 
+	@PostConstruct
+	public void registerResumers() {
+		this.asyncService.registerResumer(AsyncOperation.Type.DELETE_INSTANCE, serviceInstanceId ->
+				this.adminService.lookupService(serviceInstanceId).map(AdminRecord::getValue)
+						.ifPresent(instance -> this.admission.withSecurityPermit(() ->
+								deleteInstanceAndBindings(instance,
+										this.adminService.getServiceBindingsForInstance(serviceInstanceId)))));
+	}
+
+	private void deleteInstanceAndBindings(ServiceInstance instance, List<ServiceInstanceBinding> bindings) {
+		for (ServiceInstanceBinding binding : bindings) {
+			logger.info("Deleting Binding ID " + binding.getId() + " of Service Instance "
+					+ instance.getServiceInstanceId());
+			this.adminService.dropBindingUser(binding);
+			this.adminService.deleteServiceBinding(binding);
+		}
+		this.adminService.deleteService(instance);
+	}
+
 	@Override
 	public UpdateServiceInstanceResponse updateServiceInstance(UpdateServiceInstanceRequest request) {
 		String serviceInstanceId = request.getServiceInstanceId();
 		logger.info("Updating Service Instance: " + serviceInstanceId);
 		
-		if (!this.adminService.serviceExists(serviceInstanceId)) {
-			throw new ServiceInstanceDoesNotExistException(serviceInstanceId);
-		}
-
-		ServiceInstance instance = this.adminService.getService(serviceInstanceId);
-		this.adminService.createService(instance);
+		AdminRecord<ServiceInstance> instance = this.adminService.lookupService(serviceInstanceId)
+				.orElseThrow(() -> new ServiceInstanceDoesNotExistException(serviceInstanceId));
+		this.admission.admit(instance.getValue().getOrganizationGuid());
+		this.adminService.updateService(instance.getValue(), instance.getGeneration());
 		
 		return new UpdateServiceInstanceResponse();
 	}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.servicebroker.model.OperationState;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.aerospike.servicebroker.config.AerospikeAsyncConfig;
+import com.aerospike.servicebroker.config.AerospikeSharedStateConfig;
+import com.aerospike.servicebroker.exception.AerospikeServiceUnavailableException;
+import com.aerospike.servicebroker.model.AsyncOperation;
+
+/**
+ * Runs slow lifecycle work (security commands, cleanup) on a bounded pool
+ * and records its progress in the admin namespace so that it can be reported
+ * through getLastOperation. When the pool is saturated new work is refused
+ * with a 503 rather than queued without limit.
+ * <p>
+ * A running operation is leased to this replica and the lease is renewed
+ * while it runs. Operations whose lease has run out, because the replica
+ * running them stopped, are taken over by another replica with a
+ * generation-checked write, so only one replica resumes each. Resuming
+ * re-runs the handler registered for the operation's type, which must be
+ * idempotent.
+ */
+@Service
+public class AsyncOperationService {
+	private static final int REJECTED_RETRY_SECONDS = 5;
+
+	@Autowired
+	AerospikeAdminService adminService;
+
+	private final AerospikeSharedStateConfig sharedState;
+	private final ThreadPoolExecutor executor;
+	private final Map<AsyncOperation.Type, Consumer<String>> resumers = new EnumMap<>(AsyncOperation.Type.class);
+	// Operations running here, with the generation of their record
+	private final Map<String, AdminRecord<AsyncOperation>> running = new ConcurrentHashMap<>();
+	// Held while an operation's record is written, so that a renewal and the
+	// final state of the same operation do not race on its generation
+	private final Object leaseLock = new Object();
+	private volatile boolean indexed;
+
+	private Logger logger = LoggerFactory.getLogger(AsyncOperationService.class);
+
+	@Autowired
+	public AsyncOperationService(AerospikeAsyncConfig config, AerospikeSharedStateConfig sharedState) {
+		this.sharedState = sharedState;
+		if (config.enabled) {
+			AtomicInteger threads = new AtomicInteger();
+			this.executor = new ThreadPoolExecutor(config.threads, config.threads, 60, TimeUnit.SECONDS,
+					new ArrayBlockingQueue<Runnable>(config.queueCapacity), runnable -> {
+						Thread thread = new Thread(runnable, "aerospike-async-" + threads.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					});
+			this.executor.allowCoreThreadTimeOut(true);
+		} else {
+			this.executor = null;
+		}
+	}
+
+	public boolean isEnabled() {
+		return executor != null;
+	}
+
+	/**
+	 * Register how an operation of the given type is resumed from its id when
+	 * it is taken over from another replica.
+	 */
+	public void registerResumer(AsyncOperation.Type type, Consumer<String> resumer) {
+		resumers.put(type, resumer);
+	}
+
+	/**
+	 * Records the operation as in progress and schedules the task. The
+	 * outcome of the task is written back once it completes, unless the
+	 * lease was lost to another replica in the meantime.
+	 */
+	public AsyncOperation submit(String id, AsyncOperation.Type type, Runnable task) {
+		AsyncOperation operation = new AsyncOperation(id, type, OperationState.IN_PROGRESS, null,
+				sharedState.replicaId, System.currentTimeMillis() + sharedState.operationLeaseMs);
+		int generation = adminService.saveOperation(operation);
+		running.put(id, new AdminRecord<AsyncOperation>(operation, generation));
+		try {
+			executor.execute(() -> run(operation, task));
+		} catch (RejectedExecutionException e) {
+			logger.warn("Rejected " + type + " for " + id + ": too many operations in progress");
+			running.remove(id);
+			adminService.deleteOperation(id);
+			throw new AerospikeServiceUnavailableException(
+					"Too many operations in progress. Please try again.", REJECTED_RETRY_SECONDS);
+		}
+		return operation;
+	}
+
+	private void run(AsyncOperation operation, Runnable task) {
+		OperationState state;
+		String description = null;
+		try {
+			task.run();
+			state = OperationState.SUCCEEDED;
+		} catch (RuntimeException e) {
+			logger.error(operation.getType() + " failed for " + operation.getId() + ": " + e.getMessage());
+			state = OperationState.FAILED;
+			description = e.getMessage();
+		}
+		try {
+			// Only the holder of the lease may record the outcome
+			synchronized (leaseLock) {
+				AdminRecord<AsyncOperation> entry = running.remove(operation.getId());
+				if (entry == null || !adminService.updateOperation(entry.getValue().withState(state, description),
+						entry.getGeneration()).isPresent()) {
+					logger.warn("Lost the lease on " + operation.getType() + " for " + operation.getId()
+							+ ", its outcome is not recorded");
+				}
+			}
+		} catch (RuntimeException e) {
+			logger.error("Could not record state of " + operation.getId() + ": " + e.getMessage());
+		}
+	}
+
+	@Scheduled(initialDelayString = "${aerospike_operation_lease_check_ms:10000}",
+			fixedDelayString = "${aerospike_operation_lease_check_ms:10000}")
+	public void maintainLeases() {
+		if (!isEnabled() || !adminService.isReady()) {
+			return;
+		}
+		try {
+			if (!indexed) {
+				adminService.ensureSharedStateIndexes();
+				indexed = true;
+			}
+			renewLeases(System.currentTimeMillis());
+			takeOverExpired(System.currentTimeMillis());
+		} catch (RuntimeException e) {
+			logger.warn("Operation lease maintenance failed: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Extend the lease of every operation running here. An operation whose
+	 * record changed in the meantime has been taken over by another replica;
+	 * it is no longer renewed here.
+	 */
+	void renewLeases(long now) {
+		for (AdminRecord<AsyncOperation> entry : running.values()) {
+			AsyncOperation renewed = entry.getValue().withLease(sharedState.replicaId,
+					now + sharedState.operationLeaseMs);
+			synchronized (leaseLock) {
+				if (running.get(renewed.getId()) != entry) {
+					// Finished in the meantime
+					continue;
+				}
+				OptionalInt generation = adminService.updateOperation(renewed, entry.getGeneration());
+				if (generation.isPresent()) {
+					running.put(renewed.getId(), new AdminRecord<AsyncOperation>(renewed, generation.getAsInt()));
+				} else {
+					running.remove(renewed.getId());
+					logger.warn("Lost the lease on " + renewed.getType() + " for " + renewed.getId());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Take over and resume operations whose lease has run out.
+	 * @return the number of operations resumed here
+	 */
+	int takeOverExpired(long now) {
+		List<AdminRecord<AsyncOperation>> expired = new ArrayList<>();
+		adminService.queryOperationsInProgress(entry -> {
+			if (entry.getValue().getLeaseExpires() < now && !running.containsKey(entry.getValue().getId())) {
+				expired.add(entry);
+			}
+		});
+		int resumed = 0;
+		for (AdminRecord<AsyncOperation> entry : expired) {
+			AsyncOperation operation = entry.getValue();
+			Consumer<String> resumer = resumers.get(operation.getType());
+			if (resumer == null) {
+				continue;
+			}
+			AsyncOperation claimed = operation.withLease(sharedState.replicaId, now + sharedState.operationLeaseMs);
+			OptionalInt generation = adminService.updateOperation(claimed, entry.getGeneration());
+			if (!generation.isPresent()) {
+				// Another replica got there first
+				continue;
+			}
+			logger.info("Resuming " + operation.getType() + " for " + operation.getId() + ", previously run by "
+					+ operation.getOwner());
+			running.put(claimed.getId(), new AdminRecord<AsyncOperation>(claimed, generation.getAsInt()));
+			try {
+				executor.execute(() -> run(claimed, () -> resumer.accept(claimed.getId())));
+				resumed++;
+			} catch (RejectedExecutionException e) {
+				// Left to expire again and be picked up by a later check
+				running.remove(claimed.getId());
+			}
+		}
+		return resumed;
+	}
+
+	public Optional<AsyncOperation> getOperation(String id) {
+		return adminService.lookupOperation(id).map(AdminRecord::getValue);
+	}
+
+	public boolean isInProgress(String id) {
+		return getOperation(id)
+				.map(operation -> operation.getState() == OperationState.IN_PROGRESS)
+				.orElse(false);
+	}
+
+	public void deleteOperation(String id) {
+		adminService.deleteOperation(id);
+	}
+
+	@PreDestroy
+	public void close() throws InterruptedException {
+		if (executor != null) {
+			executor.shutdown();
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.aerospike.servicebroker.config.AerospikeSharedStateConfig;
+import com.aerospike.servicebroker.model.AdminChange;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Keeps the instance and binding caches of several broker replicas
+ * coherent. Each replica appends the ids it writes to a change log in the
+ * admin namespace, and polls the log for entries made by other replicas to
+ * drop those ids from its own caches. Entries expire after
+ * changeLogTtlSeconds. Polls look back by the allowed clock skew between
+ * replicas, and entries already seen are skipped.
+ */
+@Component
+public class ChangeLog implements MeterBinder {
+	@Autowired
+	AerospikeAdminService adminService;
+
+	private final AerospikeSharedStateConfig config;
+	private final Map<String, Long> seen = new HashMap<>();
+	private volatile boolean indexed;
+	private long lastPoll;
+
+	private final AtomicLong invalidations = new AtomicLong();
+
+	private Logger logger = LoggerFactory.getLogger(ChangeLog.class);
+
+	@Autowired
+	public ChangeLog(AerospikeSharedStateConfig config) {
+		this.config = config;
+	}
+
+	@EventListener
+	public void onRecordChanged(AdminRecordChangedEvent event) {
+		if (config.changeLogEnabled) {
+			adminService.appendChange(new AdminChange(UUID.randomUUID().toString(), event.getKind(), event.getId(),
+					config.replicaId, System.currentTimeMillis()), config.changeLogTtlSeconds);
+		}
+	}
+
+	@Scheduled(initialDelayString = "${aerospike_change_log_poll_ms:1000}",
+			fixedDelayString = "${aerospike_change_log_poll_ms:1000}")
+	public void run() {
+		if (!config.changeLogEnabled || !adminService.isReady()) {
+			return;
+		}
+		try {
+			if (!indexed) {
+				adminService.ensureSharedStateIndexes();
+				indexed = true;
+			}
+			poll(System.currentTimeMillis());
+		} catch (RuntimeException e) {
+			logger.warn("Change log poll failed: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Apply the changes other replicas made since the last poll.
+	 * @return the number of cache entries invalidated
+	 */
+	synchronized int poll(long now) {
+		long since = (lastPoll == 0 ? now : lastPoll) - config.clockSkewMs;
+		Map<String, Long> found = new HashMap<>();
+		adminService.queryChanges(since, change -> {
+			if (seen.containsKey(change.getChangeId()) || config.replicaId.equals(change.getOrigin())) {
+				return;
+			}
+			found.put(change.getChangeId(), change.getTimestamp());
+			if (change.getKind() == AdminChange.Kind.SERVICE) {
+				adminService.getServiceCache().invalidate(change.getId());
+			} else {
+				adminService.getServiceBindingCache().invalidate(change.getId());
+			}
+		});
+		seen.putAll(found);
+		// Entries older than the window will not be returned again
+		for (Iterator<Long> timestamps = seen.values().iterator(); timestamps.hasNext();) {
+			if (timestamps.next() < since) {
+				timestamps.remove();
+			}
+		}
+		lastPoll = now;
+		invalidations.addAndGet(found.size());
+		return found.size();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("aerospike.admin.change.log.invalidations", invalidations, AtomicLong::get)
+				.description("Cache entries dropped for changes made by other broker replicas")
+				.register(registry);
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.servicebroker.config.AerospikeCredentialPoolConfig;
+import com.aerospike.servicebroker.exception.AerospikeServiceException;
+import com.aerospike.servicebroker.model.PooledCredential;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Hands out database users and roles created ahead of time, so that a bind
+ * does not have to wait for createRole and createUser. Each plan
+ * (namespace) has a fixed number of slots in the admin namespace. A slot is
+ * claimed by deleting its record with a generation check, so two brokers
+ * can never claim the same credential. Pooled roles cover the whole
+ * namespace; a bind for a single set narrows the role after claiming it.
+ * Slots are refilled in the background.
+ */
+@Service
+public class CredentialPool implements MeterBinder {
+	@Autowired
+	AerospikeAdminService adminService;
+
+	private final AerospikeCredentialPoolConfig config;
+
+	private final AtomicLong claimed = new AtomicLong();
+	private final AtomicLong missed = new AtomicLong();
+
+	private Logger logger = LoggerFactory.getLogger(CredentialPool.class);
+
+	@Autowired
+	public CredentialPool(AerospikeCredentialPoolConfig config) {
+		this.config = config;
+	}
+
+	/**
+	 * Claim a pooled credential for a namespace, scoped to the given set if
+	 * there is one. A credential whose role cannot be scoped to the set is
+	 * dropped rather than handed out.
+	 * @return the credential, or empty if the pool is disabled or has none left
+	 */
+	public Optional<PooledCredential> claim(String namespace, String set) {
+		int size = config.getSize(namespace);
+		if (size == 0 || !adminService.isSecurityEnabled()) {
+			return Optional.empty();
+		}
+		try {
+			List<Map.Entry<Integer, AdminRecord<PooledCredential>>> entries =
+					new ArrayList<>(adminService.getPoolEntries(namespace, size).entrySet());
+			// Start at a random slot so that concurrent binds rarely race for the same one
+			Collections.shuffle(entries);
+			for (Map.Entry<Integer, AdminRecord<PooledCredential>> entry : entries) {
+				if (adminService.claimPoolEntry(namespace, entry.getKey(), entry.getValue().getGeneration())) {
+					PooledCredential credential = entry.getValue().getValue();
+					if (set != null) {
+						try {
+							adminService.rescopeRole(credential.getRoleName(), namespace, set);
+						} catch (AerospikeException | AerospikeServiceException e) {
+							// Out of the pool and not bound, with access to the whole namespace
+							discard(credential);
+							throw e;
+						}
+					}
+					claimed.incrementAndGet();
+					return Optional.of(credential);
+				}
+			}
+		} catch (AerospikeException | AerospikeServiceException e) {
+			logger.warn("Could not claim a pooled credential for " + namespace + ": " + e.getMessage());
+		}
+		missed.incrementAndGet();
+		return Optional.empty();
+	}
+
+	private void discard(PooledCredential credential) {
+		try {
+			adminService.dropUserByName(credential.getUserName());
+			adminService.dropRoleByName(credential.getRoleName());
+		} catch (RuntimeException e) {
+			logger.warn("Could not drop claimed credential " + credential.getUserName() + ": " + e.getMessage());
+		}
+	}
+
+	@Scheduled(initialDelayString = "${aerospike_credential_pool_refill_interval_ms:10000}",
+			fixedDelayString = "${aerospike_credential_pool_refill_interval_ms:10000}")
+	public void run() {
+		if (!adminService.isReady() || !adminService.isSecurityEnabled()) {
+			return;
+		}
+		for (String namespace : adminService.getNamespaceInfo().keySet()) {
+			try {
+				refill(namespace);
+			} catch (RuntimeException e) {
+				logger.warn("Credential pool refill for " + namespace + " failed: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Fill the empty slots of a namespace once it has dropped below its
+	 * low-water mark.
+	 * @return the number of entries created
+	 */
+	int refill(String namespace) {
+		int size = config.getSize(namespace);
+		if (size == 0) {
+			return 0;
+		}
+		Set<Integer> present = adminService.getPoolEntries(namespace, size).keySet();
+		if (present.size() >= config.getLowWater(namespace) && !present.isEmpty()) {
+			return 0;
+		}
+		int created = 0;
+		for (int slot = 0; slot < size; slot++) {
+			if (!present.contains(slot)) {
+				adminService.createPoolEntry(namespace, slot);
+				created++;
+			}
+		}
+		if (created > 0) {
+			logger.info("Added " + created + " credentials to the pool for " + namespace);
+		}
+		return created;
+	}
+
+	/**
+	 * Names of the users and roles currently waiting in the pool.
+	 */
+	public Set<String> getPooledNames() {
+		Set<String> names = new HashSet<>();
+		for (String namespace : adminService.getNamespaceInfo().keySet()) {
+			int size = config.getSize(namespace);
+			if (size > 0) {
+				for (AdminRecord<PooledCredential> entry : adminService.getPoolEntries(namespace, size).values()) {
+					names.add(entry.getValue().getUserName());
+					names.add(entry.getValue().getRoleName());
+				}
+			}
+		}
+		return names;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("aerospike.admin.pool.claims", claimed, AtomicLong::get)
+				.description("Binds served from the credential pool")
+				.tag("outcome", "claimed")
+				.register(registry);
+		FunctionCounter.builder("aerospike.admin.pool.claims", missed, AtomicLong::get)
+				.description("Binds served from the credential pool")
+				.tag("outcome", "missed")
+				.register(registry);
+	}
+}
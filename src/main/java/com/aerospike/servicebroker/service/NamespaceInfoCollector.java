@@ -0,0 +1,326 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.aerospike.client.Host;
+import com.aerospike.client.Info;
+import com.aerospike.client.cluster.Node;
+import com.aerospike.client.policy.InfoPolicy;
+import com.aerospike.servicebroker.exception.AerospikeServiceException;
+import com.aerospike.servicebroker.model.ClusterNode;
+import com.aerospike.servicebroker.model.ClusterTopology;
+
+/**
+ * Collects namespace configuration from every node of the cluster in
+ * parallel and merges the per-node results into a cluster-wide view. Each
+ * node is asked for its namespace list and then for all of its namespaces in
+ * a single info request.
+ */
+public class NamespaceInfoCollector {
+	static final String NAMESPACES_INFO = "namespaces";
+	static final String NAMESPACE_INFO_PREFIX = "namespace/";
+	static final String SETS_INFO_PREFIX = "sets/";
+	static final String CLUSTER_NAME_INFO = "cluster-name";
+	static final String ALTERNATE_SERVICE_INFO = "service-clear-alt";
+
+	static final String MEMORY_SIZE_KEY = "memory-size";
+	static final String REPLICATION_FACTOR_KEY = "effective_replication_factor";
+	static final String OBJECTS_KEY = "objects";
+	static final String RACK_ID_KEY = "rack-id";
+
+	private Logger logger = LoggerFactory.getLogger(NamespaceInfoCollector.class);
+
+	private final ExecutorService executor;
+
+	public NamespaceInfoCollector() {
+		AtomicInteger threads = new AtomicInteger();
+		this.executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "namespace-info-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Collect namespace info from all nodes, excluding the admin namespace.
+	 * Nodes that fail to answer are skipped unless allNodes is set, since
+	 * sizes summed over part of the cluster are only good as a first view;
+	 * the collection fails if no node answers or the admin namespace is not
+	 * configured.
+	 */
+	public Map<String, Map<String, String>> collect(Node[] nodes, InfoPolicy policy, String adminNamespace,
+			boolean allNodes) {
+		List<CompletableFuture<Map<String, Map<String, String>>>> futures = new ArrayList<>();
+		for (Node node : nodes) {
+			futures.add(CompletableFuture.supplyAsync(() -> collectNode(node, policy), executor));
+		}
+
+		List<Map<String, Map<String, String>>> perNode = new ArrayList<>();
+		RuntimeException lastError = null;
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				perNode.add(futures.get(i).join());
+			} catch (CompletionException e) {
+				lastError = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+				logger.warn("Namespace info from node " + nodes[i] + " failed: " + e.getCause().getMessage());
+			}
+		}
+		if (perNode.isEmpty()) {
+			throw lastError != null ? lastError
+					: new AerospikeServiceException("No cluster nodes available for namespace discovery.");
+		}
+		if (allNodes && perNode.size() < nodes.length) {
+			throw new AerospikeServiceException("Namespace info from only " + perNode.size() + " of "
+					+ nodes.length + " nodes.");
+		}
+
+		Map<String, Map<String, String>> merged = merge(perNode);
+		if (merged.remove(adminNamespace) == null) {
+			throw new AerospikeServiceException("Namspace " + adminNamespace
+					+ " must be configured in order to use the service broker with this database.");
+		}
+		return Collections.unmodifiableMap(merged);
+	}
+
+	/**
+	 * Count the records of a set across the cluster. Nodes report master and
+	 * replica copies together, so the total is divided by the namespace's
+	 * replication factor. Returns -1 if no node answers.
+	 */
+	public long countObjects(Node[] nodes, InfoPolicy policy, String namespace, String set) {
+		String setCommand = SETS_INFO_PREFIX + namespace + "/" + set;
+		String namespaceCommand = NAMESPACE_INFO_PREFIX + namespace;
+		List<CompletableFuture<Map<String, String>>> futures = new ArrayList<>();
+		for (Node node : nodes) {
+			futures.add(CompletableFuture.supplyAsync(
+					() -> Info.request(policy, node, setCommand, namespaceCommand), executor));
+		}
+
+		long objects = 0;
+		long replicationFactor = 1;
+		boolean answered = false;
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				Map<String, String> responses = futures.get(i).join();
+				objects += parseLong(parse(responses.get(setCommand), "[:;]").get(OBJECTS_KEY), 0);
+				replicationFactor = Math.max(replicationFactor,
+						parseLong(parse(responses.get(namespaceCommand)).get(REPLICATION_FACTOR_KEY), 1));
+				answered = true;
+			} catch (CompletionException e) {
+				logger.warn("Set info from node " + nodes[i] + " failed: " + e.getCause().getMessage());
+			}
+		}
+		return answered ? objects / replicationFactor : -1;
+	}
+
+	/**
+	 * Collect the cluster name and, for every node, its alternate address and
+	 * its rack in each of the given namespaces. Nodes that fail to answer are
+	 * listed with their address only.
+	 */
+	public ClusterTopology collectTopology(Node[] nodes, InfoPolicy policy, Collection<String> namespaces) {
+		List<String> commandList = new ArrayList<>();
+		commandList.add(CLUSTER_NAME_INFO);
+		commandList.add(ALTERNATE_SERVICE_INFO);
+		for (String ns : namespaces) {
+			commandList.add(NAMESPACE_INFO_PREFIX + ns);
+		}
+		String[] commands = commandList.toArray(new String[commandList.size()]);
+		List<CompletableFuture<Map<String, String>>> futures = new ArrayList<>();
+		for (Node node : nodes) {
+			futures.add(CompletableFuture.supplyAsync(() -> Info.request(policy, node, commands), executor));
+		}
+
+		String clusterName = null;
+		List<ClusterNode> result = new ArrayList<>();
+		for (int i = 0; i < futures.size(); i++) {
+			Map<String, String> responses = Collections.emptyMap();
+			try {
+				responses = futures.get(i).join();
+			} catch (CompletionException e) {
+				logger.warn("Topology info from node " + nodes[i] + " failed: " + e.getCause().getMessage());
+			}
+			if (clusterName == null) {
+				clusterName = parseClusterName(responses.get(CLUSTER_NAME_INFO));
+			}
+			result.add(toClusterNode(nodes[i].getName(), nodes[i].getHost(), responses, namespaces));
+		}
+		return new ClusterTopology(clusterName, result);
+	}
+
+	static ClusterNode toClusterNode(String name, Host host, Map<String, String> responses,
+			Collection<String> namespaces) {
+		Map<String, Integer> rackIds = new HashMap<>();
+		for (String ns : namespaces) {
+			String rackId = parse(responses.get(NAMESPACE_INFO_PREFIX + ns)).get(RACK_ID_KEY);
+			if (rackId != null) {
+				rackIds.put(ns, (int) parseLong(rackId, 0));
+			}
+		}
+		String alternateHost = null;
+		int alternatePort = 0;
+		String alternate = responses.get(ALTERNATE_SERVICE_INFO);
+		if (alternate != null && !alternate.trim().isEmpty()) {
+			List<Host> hosts = Host.parseServiceHosts(alternate.trim());
+			if (!hosts.isEmpty()) {
+				alternateHost = hosts.get(0).name;
+				alternatePort = hosts.get(0).port;
+			}
+		}
+		return new ClusterNode(name, host.name, host.port, host.tlsName, alternateHost, alternatePort,
+				rackIds);
+	}
+
+	private static String parseClusterName(String info) {
+		// Servers without a configured name answer "null"
+		if (info == null || info.trim().isEmpty() || "null".equals(info.trim())) {
+			return null;
+		}
+		return info.trim();
+	}
+
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	private Map<String, Map<String, String>> collectNode(Node node, InfoPolicy policy) {
+		Set<String> namespaces = new LinkedHashSet<>();
+		for (String ns : Info.request(policy, node, NAMESPACES_INFO).split(";")) {
+			if (!ns.isEmpty()) {
+				namespaces.add(ns);
+			}
+		}
+		if (namespaces.isEmpty()) {
+			return Collections.emptyMap();
+		}
+
+		String[] commands = new String[namespaces.size()];
+		int i = 0;
+		for (String ns : namespaces) {
+			commands[i++] = NAMESPACE_INFO_PREFIX + ns;
+		}
+		Map<String, String> responses = Info.request(policy, node, commands);
+
+		Map<String, Map<String, String>> result = new HashMap<>();
+		for (String ns : namespaces) {
+			result.put(ns, parse(responses.get(NAMESPACE_INFO_PREFIX + ns)));
+		}
+		return result;
+	}
+
+	static Map<String, String> parse(String info) {
+		return parse(info, ";");
+	}
+
+	static Map<String, String> parse(String info, String separator) {
+		Map<String, String> infoHash = new HashMap<String, String>();
+		if (info == null) {
+			return infoHash;
+		}
+		for (String inf : info.split(separator)) {
+			String[] data = inf.split("=");
+			if (data != null && data.length == 2) {
+				infoHash.put(data[0], data[1]);
+			}
+		}
+		return infoHash;
+	}
+
+	/**
+	 * Merge per-node namespace info. Values are taken from the first node that
+	 * reports a namespace, except that memory-size is summed across nodes and
+	 * the replication factor is checked for consistency, using the lowest
+	 * value reported if nodes disagree.
+	 */
+	static Map<String, Map<String, String>> merge(List<Map<String, Map<String, String>>> perNode) {
+		Map<String, Map<String, String>> merged = new HashMap<>();
+		for (Map<String, Map<String, String>> node : perNode) {
+			for (Map.Entry<String, Map<String, String>> entry : node.entrySet()) {
+				Map<String, String> current = merged.get(entry.getKey());
+				if (current == null) {
+					merged.put(entry.getKey(), new HashMap<>(entry.getValue()));
+				} else {
+					mergeNamespace(entry.getKey(), current, entry.getValue());
+				}
+			}
+		}
+		for (Map.Entry<String, Map<String, String>> entry : merged.entrySet()) {
+			entry.setValue(Collections.unmodifiableMap(entry.getValue()));
+		}
+		return merged;
+	}
+
+	private static void mergeNamespace(String ns, Map<String, String> current, Map<String, String> node) {
+		Long total = sum(current.get(MEMORY_SIZE_KEY), node.get(MEMORY_SIZE_KEY));
+		if (total != null) {
+			current.put(MEMORY_SIZE_KEY, total.toString());
+		}
+
+		String replication = current.get(REPLICATION_FACTOR_KEY);
+		String nodeReplication = node.get(REPLICATION_FACTOR_KEY);
+		if (replication != null && nodeReplication != null && !replication.equals(nodeReplication)) {
+			LoggerFactory.getLogger(NamespaceInfoCollector.class).warn("Namespace " + ns
+					+ " reports inconsistent replication factors across nodes: " + replication + ", "
+					+ nodeReplication);
+			Long lowest = min(replication, nodeReplication);
+			if (lowest != null) {
+				current.put(REPLICATION_FACTOR_KEY, lowest.toString());
+			}
+		}
+	}
+
+	private static long parseLong(String value, long defaultValue) {
+		try {
+			return value == null ? defaultValue : Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	private static Long sum(String a, String b) {
+		try {
+			return Long.parseLong(a) + Long.parseLong(b);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static Long min(String a, String b) {
+		try {
+			return Math.min(Long.parseLong(a), Long.parseLong(b));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically re-polls the cluster's namespace info so that new namespaces
+ * and configuration changes reach the catalog without a broker restart. The
+ * cluster topology handed to bindings and the instance and binding counts
+ * reported as metrics are refreshed alongside.
+ */
+@Component
+public class NamespaceInfoRefresher {
+	private Logger logger = LoggerFactory.getLogger(NamespaceInfoRefresher.class);
+
+	@Autowired
+	private AerospikeAdminService adminService;
+
+	@Scheduled(initialDelayString = "${aerospike_namespace_refresh_interval_ms:60000}",
+			fixedDelayString = "${aerospike_namespace_refresh_interval_ms:60000}")
+	public void refresh() {
+		try {
+			adminService.refreshNamespaceInfo();
+		} catch (RuntimeException e) {
+			logger.warn("Namespace info refresh failed, keeping previous info: " + e.getMessage());
+		}
+		try {
+			adminService.refreshTopology();
+		} catch (RuntimeException e) {
+			logger.warn("Topology refresh failed, keeping previous topology: " + e.getMessage());
+		}
+		try {
+			adminService.refreshRecordCounts();
+		} catch (RuntimeException e) {
+			logger.warn("Record count refresh failed: " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.aerospike.servicebroker.config.AerospikeOrphanCollectorConfig;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Drops binding users and roles that no binding record refers to, such as
+ * those left behind when a bind failed after createUser. Only names this
+ * broker recorded as its own in the admin namespace are considered, so users
+ * created by other brokers sharing the cluster are never touched. It is off
+ * unless aerospike_orphan_gc_enabled is set. Collection is two
+ * phase: a name must be found orphaned on two consecutive runs before it is
+ * dropped, so a bind that is between createUser and writing its binding
+ * record is never mistaken for an orphan. Drops are made in small batches
+ * with a pause in between to keep security command load on the cluster low.
+ */
+@Component
+public class OrphanCollector implements MeterBinder {
+	// Names made by formatUserRole from a binding (GUID) id, and names of
+	// credentials made for the pool
+	private static final Pattern BINDING_NAME = Pattern.compile("[ur][0-9a-f]{29}|p[ur][0-9a-f]{28}");
+
+	@Autowired
+	AerospikeAdminService adminService;
+
+	@Autowired
+	CredentialPool credentialPool;
+
+	private final AerospikeOrphanCollectorConfig config;
+	private volatile Set<String> candidates = Collections.emptySet();
+
+	private final AtomicLong droppedUsers = new AtomicLong();
+	private final AtomicLong droppedRoles = new AtomicLong();
+
+	private Logger logger = LoggerFactory.getLogger(OrphanCollector.class);
+
+	@Autowired
+	public OrphanCollector(AerospikeOrphanCollectorConfig config) {
+		this.config = config;
+	}
+
+	@Scheduled(initialDelayString = "${aerospike_orphan_gc_interval_ms:900000}",
+			fixedDelayString = "${aerospike_orphan_gc_interval_ms:900000}")
+	public void run() {
+		if (!config.enabled || !adminService.isReady() || !adminService.isSecurityEnabled()) {
+			return;
+		}
+		try {
+			collect();
+		} catch (RuntimeException e) {
+			logger.warn("Orphan collection failed: " + e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Run one collection pass.
+	 * @return the number of users and roles dropped
+	 */
+	synchronized int collect() throws InterruptedException {
+		// List users and roles before reading bindings, so anything created
+		// after the listing is left for a later run
+		Set<String> orphans = new HashSet<>();
+		for (String name : adminService.queryUserNames()) {
+			if (isBindingName(name)) {
+				orphans.add(name);
+			}
+		}
+		for (String name : adminService.queryRoleNames()) {
+			if (isBindingName(name)) {
+				orphans.add(name);
+			}
+		}
+		if (!orphans.isEmpty()) {
+			orphans.retainAll(adminService.queryOwnedNames());
+		}
+		if (orphans.isEmpty()) {
+			candidates = Collections.emptySet();
+			return 0;
+		}
+
+		adminService.scanServiceBindings(binding -> {
+			orphans.remove(adminService.getUserName(binding.getId()));
+			orphans.remove(adminService.getRoleName(binding.getId()));
+			// Bindings served from the pool store the names they were given
+			if (binding.getCredentials() != null) {
+				orphans.remove(binding.getCredentials().get("user"));
+			}
+			orphans.remove(binding.getRoleName());
+		});
+		orphans.removeAll(credentialPool.getPooledNames());
+
+		List<String> confirmed = new ArrayList<>();
+		for (String name : orphans) {
+			if (candidates.contains(name)) {
+				confirmed.add(name);
+			}
+		}
+		orphans.removeAll(confirmed);
+		candidates = orphans;
+		if (!orphans.isEmpty()) {
+			logger.info(orphans.size() + " possibly orphaned users/roles, will recheck on the next run");
+		}
+
+		// Users first, so a role is never dropped while a user still holds it
+		Collections.sort(confirmed, (a, b) -> type(b) - type(a));
+		int dropped = 0;
+		for (String name : confirmed) {
+			if (dropped > 0 && dropped % config.batchSize == 0) {
+				Thread.sleep(config.batchPauseMs);
+			}
+			if (type(name) == 'u') {
+				adminService.dropUserByName(name);
+				droppedUsers.incrementAndGet();
+			} else {
+				adminService.dropRoleByName(name);
+				droppedRoles.incrementAndGet();
+			}
+			dropped++;
+		}
+		if (dropped > 0) {
+			logger.info("Dropped " + dropped + " orphaned users/roles");
+		}
+		return dropped;
+	}
+
+	private static char type(String name) {
+		return name.charAt(0) == 'p' ? name.charAt(1) : name.charAt(0);
+	}
+
+	private boolean isBindingName(String name) {
+		return BINDING_NAME.matcher(name).matches() && !name.equals(adminService.getAdminUser());
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("aerospike.admin.orphans.dropped", droppedUsers, AtomicLong::get)
+				.description("Orphaned binding users and roles dropped")
+				.tag("type", "user")
+				.register(registry);
+		FunctionCounter.builder("aerospike.admin.orphans.dropped", droppedRoles, AtomicLong::get)
+				.description("Orphaned binding users and roles dropped")
+				.tag("type", "role")
+				.register(registry);
+		Gauge.builder("aerospike.admin.orphans.pending", this, collector -> collector.candidates.size())
+				.description("Users and roles found orphaned once, pending a second check")
+				.register(registry);
+	}
+}
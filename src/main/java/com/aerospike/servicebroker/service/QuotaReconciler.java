@@ -0,0 +1,152 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.aerospike.servicebroker.config.AerospikeQuotaConfig;
+import com.aerospike.servicebroker.model.PlanQuotas;
+import com.aerospike.servicebroker.model.ServiceInstanceBinding;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Pushes changes to a plan's quotas to the roles of the plan's existing
+ * bindings. The quotas last pushed for each plan are stored in the admin
+ * namespace; a plan whose configured quotas differ has all of its bindings'
+ * roles updated, in small batches with a pause in between, and is then
+ * recorded as up to date. A plan that could not be fully updated is retried
+ * on the next run.
+ */
+@Component
+public class QuotaReconciler implements MeterBinder {
+	@Autowired
+	AerospikeAdminService adminService;
+
+	private final AerospikeQuotaConfig config;
+	private final AtomicLong updatedRoles = new AtomicLong();
+
+	private Logger logger = LoggerFactory.getLogger(QuotaReconciler.class);
+
+	@Autowired
+	public QuotaReconciler(AerospikeQuotaConfig config) {
+		this.config = config;
+	}
+
+	@Scheduled(initialDelayString = "${aerospike_quota_sync_interval_ms:60000}",
+			fixedDelayString = "${aerospike_quota_sync_interval_ms:60000}")
+	public void run() {
+		if (!adminService.isReady() || !adminService.isSecurityEnabled()) {
+			return;
+		}
+		try {
+			reconcile();
+		} catch (RuntimeException e) {
+			logger.warn("Quota update failed: " + e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Run one pass.
+	 * @return the number of roles updated
+	 */
+	synchronized int reconcile() throws InterruptedException {
+		if (adminService.isQuotasUnsupported()) {
+			// Nothing could be applied, so do not scan the bindings for it
+			return 0;
+		}
+		Map<String, PlanQuotas> changed = new HashMap<>();
+		for (String namespace : adminService.getNamespaceInfo().keySet()) {
+			PlanQuotas wanted = new PlanQuotas(namespace, config.getReadQuota(namespace),
+					config.getWriteQuota(namespace));
+			PlanQuotas pushed = adminService.lookupPlanQuotas(namespace)
+					.orElse(new PlanQuotas(namespace, 0, 0));
+			if (wanted.getReadQuota() != pushed.getReadQuota() || wanted.getWriteQuota() != pushed.getWriteQuota()) {
+				changed.put(namespace, wanted);
+			}
+		}
+		if (changed.isEmpty()) {
+			return 0;
+		}
+
+		List<ServiceInstanceBinding> bindings = new ArrayList<>();
+		adminService.scanServiceBindings(binding -> {
+			if (binding.getCredentials() != null && changed.containsKey(binding.getCredentials().get("namespace"))) {
+				bindings.add(binding);
+			}
+		});
+
+		Set<String> failed = new HashSet<>();
+		int updated = 0;
+		for (ServiceInstanceBinding binding : bindings) {
+			String namespace = (String) binding.getCredentials().get("namespace");
+			if (failed.contains(namespace)) {
+				continue;
+			}
+			if (updated > 0 && updated % config.syncBatchSize == 0) {
+				Thread.sleep(config.syncBatchPauseMs);
+			}
+			PlanQuotas plan = changed.get(namespace);
+			try {
+				if (!adminService.setRoleQuotas(adminService.getBindingRoleName(binding),
+						AerospikeQuotaConfig.effective(plan.getReadQuota(), binding.getReadQuota()),
+						AerospikeQuotaConfig.effective(plan.getWriteQuota(), binding.getWriteQuota()))) {
+					// The cluster cannot apply quotas; leave every plan for a later run
+					return updated;
+				}
+			} catch (RuntimeException e) {
+				logger.warn("Could not update quotas of binding " + binding.getId() + ": " + e.getMessage());
+				failed.add(namespace);
+				continue;
+			}
+			updatedRoles.incrementAndGet();
+			updated++;
+		}
+
+		for (PlanQuotas plan : changed.values()) {
+			if (!failed.contains(plan.getNamespace())) {
+				adminService.savePlanQuotas(plan);
+				logger.info("Quotas of plan " + plan.getNamespace() + " set to read " + plan.getReadQuota()
+						+ ", write " + plan.getWriteQuota());
+			}
+		}
+		return updated;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		FunctionCounter.builder("aerospike.admin.quota.updates", updatedRoles, AtomicLong::get)
+				.description("Binding roles updated for changes to their plan's quotas")
+				.register(registry);
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.ResultCode;
+import com.aerospike.servicebroker.config.AerospikeRetryConfig;
+
+/**
+ * Runs cluster commands with bounded retries. Failures are classified by
+ * result code: codes that mean the command's effect is already in place
+ * (e.g. "role already exists" on create) count as success, transient codes
+ * are retried after an exponentially growing, fully jittered delay, and
+ * anything else fails immediately.
+ */
+public class RetryExecutor {
+	public enum Outcome {
+		SUCCEEDED,
+		ALREADY_APPLIED,
+		FAILED
+	}
+
+	@FunctionalInterface
+	public interface Command {
+		void execute() throws AerospikeException;
+	}
+
+	@FunctionalInterface
+	interface Sleeper {
+		void sleep(long millis) throws InterruptedException;
+	}
+
+	public static class OutcomeStats {
+		private final LongAdder count = new LongAdder();
+		private final LongAdder attempts = new LongAdder();
+		private final LongAdder latencyNanos = new LongAdder();
+
+		public long getCount() {
+			return count.sum();
+		}
+
+		public long getAttempts() {
+			return attempts.sum();
+		}
+
+		public long getTotalLatencyNanos() {
+			return latencyNanos.sum();
+		}
+	}
+
+	private final AerospikeRetryConfig config;
+	private final Sleeper sleeper;
+	private final DoubleSupplier random;
+	private final Map<Outcome, OutcomeStats> stats = new EnumMap<>(Outcome.class);
+
+	private Logger logger = LoggerFactory.getLogger(RetryExecutor.class);
+
+	public RetryExecutor(AerospikeRetryConfig config) {
+		this(config, Thread::sleep, () -> ThreadLocalRandom.current().nextDouble());
+	}
+
+	RetryExecutor(AerospikeRetryConfig config, Sleeper sleeper, DoubleSupplier random) {
+		this.config = config;
+		this.sleeper = sleeper;
+		this.random = random;
+		for (Outcome outcome : Outcome.values()) {
+			stats.put(outcome, new OutcomeStats());
+		}
+	}
+
+	/**
+	 * Runs the command until it succeeds, fails with one of the
+	 * alreadyAppliedCodes, fails permanently or runs out of attempts. The
+	 * last AerospikeException is rethrown on failure.
+	 */
+	public Outcome execute(String name, Command command, int... alreadyAppliedCodes) {
+		long start = System.nanoTime();
+		int attempt = 0;
+		while (true) {
+			attempt++;
+			try {
+				command.execute();
+				return record(Outcome.SUCCEEDED, attempt, start);
+			} catch (AerospikeException ae) {
+				int resultCode = ae.getResultCode();
+				if (contains(alreadyAppliedCodes, resultCode)) {
+					logger.debug(name + " already applied: " + ae.getMessage());
+					return record(Outcome.ALREADY_APPLIED, attempt, start);
+				}
+				if (!isTransient(resultCode) || attempt >= config.maxAttempts) {
+					record(Outcome.FAILED, attempt, start);
+					throw ae;
+				}
+				long delay = backoffMillis(attempt);
+				logger.warn(name + " attempt " + attempt + " failed (" + resultCode + "), retrying in "
+						+ delay + "ms: " + ae.getMessage());
+				try {
+					sleeper.sleep(delay);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					record(Outcome.FAILED, attempt, start);
+					throw ae;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Full jitter: a uniformly random delay up to the exponential ceiling, so
+	 * that brokers retrying against the same struggling cluster spread out.
+	 */
+	long backoffMillis(int attempt) {
+		long ceiling = config.initialBackoffMs << Math.min(attempt - 1, 30);
+		if (ceiling <= 0 || ceiling > config.maxBackoffMs) {
+			ceiling = config.maxBackoffMs;
+		}
+		return (long) (random.getAsDouble() * ceiling);
+	}
+
+	static boolean isTransient(int resultCode) {
+		switch (resultCode) {
+		case ResultCode.SERVER_NOT_AVAILABLE:
+		case ResultCode.NO_MORE_CONNECTIONS:
+		case ResultCode.INVALID_NODE_ERROR:
+		case ResultCode.SERVER_ERROR:
+		case ResultCode.CLUSTER_KEY_MISMATCH:
+		case ResultCode.SERVER_MEM_ERROR:
+		case ResultCode.TIMEOUT:
+		case ResultCode.PARTITION_UNAVAILABLE:
+		case ResultCode.KEY_BUSY:
+		case ResultCode.DEVICE_OVERLOAD:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private Outcome record(Outcome outcome, int attempts, long start) {
+		OutcomeStats outcomeStats = stats.get(outcome);
+		outcomeStats.count.increment();
+		outcomeStats.attempts.add(attempts);
+		outcomeStats.latencyNanos.add(System.nanoTime() - start);
+		return outcome;
+	}
+
+	private static boolean contains(int[] codes, int code) {
+		for (int c : codes) {
+			if (c == code) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public OutcomeStats getStats(Outcome outcome) {
+		return stats.get(outcome);
+	}
+}
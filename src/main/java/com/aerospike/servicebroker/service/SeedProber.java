@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.aerospike.client.Host;
+
+/**
+ * Finds out which seed hosts accept connections before the client is
+ * created. The client tries its seeds one after the other and waits out the
+ * connect timeout on each one that is down, so a node being redeployed used
+ * to stall startup. All seeds are probed at once instead, and the client is
+ * given those that answered first, fastest first, followed by the others so
+ * that they are still tried if none of the first can be reached later. If
+ * none answer, the seeds are returned as they are and the client reports the
+ * failure.
+ */
+final class SeedProber {
+	private final ExecutorService executor;
+
+	private Logger logger = LoggerFactory.getLogger(SeedProber.class);
+
+	SeedProber() {
+		AtomicInteger threads = new AtomicInteger();
+		this.executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "seed-probe-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	List<Host> probe(List<Host> seeds, int timeoutMs) {
+		if (seeds.size() <= 1) {
+			return seeds;
+		}
+		Queue<Host> answered = new ConcurrentLinkedQueue<>();
+		List<CompletableFuture<Void>> probes = new ArrayList<>();
+		for (Host seed : seeds) {
+			probes.add(CompletableFuture.runAsync(() -> {
+				if (connects(seed, timeoutMs)) {
+					answered.add(seed);
+				}
+			}, executor));
+		}
+		try {
+			CompletableFuture.allOf(probes.toArray(new CompletableFuture<?>[probes.size()]))
+					.get(timeoutMs * 2L, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException | ExecutionException e) {
+			// Seeds that have not answered by now count as down
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		List<Host> ordered = new ArrayList<>(answered);
+		if (ordered.isEmpty()) {
+			logger.warn("No seed host answered within " + timeoutMs + " ms: " + seeds);
+			return seeds;
+		}
+		if (ordered.size() < seeds.size()) {
+			List<Host> down = new ArrayList<>(seeds);
+			down.removeAll(ordered);
+			logger.warn("Seed hosts not answering, trying them last: " + down);
+			ordered.addAll(down);
+		}
+		return ordered;
+	}
+
+	private static boolean connects(Host seed, int timeoutMs) {
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(seed.name, seed.port), timeoutMs);
+			return true;
+		} catch (IOException | IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	void close() {
+		executor.shutdownNow();
+	}
+}
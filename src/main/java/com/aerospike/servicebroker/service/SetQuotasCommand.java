@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.IAerospikeClient;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.cluster.Connection;
+import com.aerospike.client.cluster.Node;
+import com.aerospike.client.policy.AdminPolicy;
+
+/**
+ * The security command that sets a role's read and write quotas. Servers
+ * from 5.6 support it but the 4.x client does not, so it is written here in
+ * the client's admin wire format: an 8 byte protocol header, a 16 byte admin
+ * header holding the command and field count, then the fields, each with a
+ * 4 byte length and a 1 byte id. Like the client's own admin commands it is
+ * sent over a pooled, already authenticated connection to a random node.
+ */
+final class SetQuotasCommand {
+	// Result codes of servers that cannot apply quotas
+	static final int QUOTAS_NOT_ENABLED = 74;
+
+	private static final byte SET_QUOTAS = 15;
+	private static final byte ROLE = 11;
+	private static final byte READ_QUOTA = 14;
+	private static final byte WRITE_QUOTA = 15;
+
+	private static final long ADMIN_MESSAGE_TYPE = 2L << 48;
+	private static final int HEADER_SIZE = 24;
+	private static final int RESULT_CODE = 9;
+
+	private SetQuotasCommand() {
+	}
+
+	static void execute(IAerospikeClient client, AdminPolicy policy, String roleName, int readQuota,
+			int writeQuota) {
+		Node[] nodes = client.getNodes();
+		if (nodes.length == 0) {
+			throw new AerospikeException(ResultCode.SERVER_NOT_AVAILABLE, "No cluster nodes available");
+		}
+		Node node = nodes[ThreadLocalRandom.current().nextInt(nodes.length)];
+		byte[] message = encode(roleName, readQuota, writeQuota);
+		byte[] response = new byte[HEADER_SIZE];
+		Connection connection = node.getConnection(policy.timeout);
+		try {
+			connection.write(message, message.length);
+			connection.readFully(response, HEADER_SIZE);
+			node.putConnection(connection);
+		} catch (IOException e) {
+			node.closeConnection(connection);
+			throw new AerospikeException.Connection(e);
+		} catch (RuntimeException e) {
+			node.closeConnection(connection);
+			throw e;
+		}
+		int resultCode = response[RESULT_CODE] & 0xFF;
+		if (resultCode != ResultCode.OK) {
+			throw new AerospikeException(resultCode);
+		}
+	}
+
+	static byte[] encode(String roleName, int readQuota, int writeQuota) {
+		byte[] role = roleName.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 5 + role.length + 2 * (5 + 4));
+		buffer.putLong((buffer.capacity() - 8) | ADMIN_MESSAGE_TYPE);
+		buffer.put(new byte[] {0, 0, SET_QUOTAS, 3});
+		buffer.put(new byte[HEADER_SIZE - 12]);
+		buffer.putInt(role.length + 1).put(ROLE).put(role);
+		buffer.putInt(5).put(READ_QUOTA).putInt(readQuota);
+		buffer.putInt(5).put(WRITE_QUOTA).putInt(writeQuota);
+		return buffer.array();
+	}
+}
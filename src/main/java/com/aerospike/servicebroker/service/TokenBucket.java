@@ -0,0 +1,59 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+/**
+ * A token bucket holding up to capacity tokens, refilled continuously at
+ * ratePerSecond. Times are System.nanoTime() values.
+ */
+final class TokenBucket {
+	private final double capacity;
+	private final double tokensPerNano;
+	private double tokens;
+	private long updated;
+
+	TokenBucket(int capacity, double ratePerSecond, long now) {
+		this.capacity = capacity;
+		this.tokensPerNano = ratePerSecond / 1e9;
+		this.tokens = capacity;
+		this.updated = now;
+	}
+
+	/**
+	 * Take a token if one is available.
+	 * @return 0 if a token was taken, otherwise the nanoseconds until one
+	 * will be available
+	 */
+	synchronized long tryTake(long now) {
+		refill(now);
+		if (tokens >= 1) {
+			tokens -= 1;
+			return 0;
+		}
+		return (long) Math.ceil((1 - tokens) / tokensPerNano);
+	}
+
+	synchronized boolean isFull(long now) {
+		refill(now);
+		return tokens >= capacity;
+	}
+
+	private void refill(long now) {
+		tokens = Math.min(capacity, tokens + (now - updated) * tokensPerNano);
+		updated = now;
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.aerospike.client.Host;
+import com.aerospike.client.cluster.Node;
+
+/**
+ * The cluster's host list, cached until the cluster changes, and handed out
+ * as seed lists that start at a different node each time. The client swaps
+ * in a new node array whenever tending adds or removes a node, so comparing
+ * the array by identity is enough to notice a change. Rotating the start
+ * spreads apps' first connections evenly over the nodes instead of sending
+ * every app that restarts to the same one.
+ */
+final class TopologySnapshot {
+	private static final class Snapshot {
+		final Node[] nodes;
+		final List<Host> hosts;
+
+		Snapshot(Node[] nodes, List<Host> hosts) {
+			this.nodes = nodes;
+			this.hosts = hosts;
+		}
+	}
+
+	private final Function<Node[], Host[]> hostsOf;
+	private final AtomicInteger next = new AtomicInteger();
+	private volatile Snapshot snapshot = new Snapshot(new Node[0], Collections.emptyList());
+
+	TopologySnapshot() {
+		this(TopologySnapshot::hostsOf);
+	}
+
+	TopologySnapshot(Function<Node[], Host[]> hostsOf) {
+		this.hostsOf = hostsOf;
+	}
+
+	/**
+	 * The hosts of the given nodes, in the client's order.
+	 */
+	List<Host> hosts(Node[] nodes) {
+		Snapshot current = snapshot;
+		if (current.nodes != nodes) {
+			current = new Snapshot(nodes, Collections.unmodifiableList(Arrays.asList(hostsOf.apply(nodes))));
+			snapshot = current;
+		}
+		return current.hosts;
+	}
+
+	/**
+	 * The hosts of the given nodes, starting one node further on than the
+	 * previous call.
+	 */
+	List<Host> seeds(Node[] nodes) {
+		List<Host> hosts = hosts(nodes);
+		int size = hosts.size();
+		if (size == 0) {
+			return hosts;
+		}
+		int start = Math.floorMod(next.getAndIncrement(), size);
+		List<Host> seeds = new ArrayList<>(size);
+		seeds.addAll(hosts.subList(start, size));
+		seeds.addAll(hosts.subList(0, start));
+		return seeds;
+	}
+
+	private static Host[] hostsOf(Node[] nodes) {
+		Host[] hosts = new Host[nodes.length];
+		for (int i = 0; i < nodes.length; i++) {
+			hosts[i] = nodes[i].getHost();
+		}
+		return hosts;
+	}
+}
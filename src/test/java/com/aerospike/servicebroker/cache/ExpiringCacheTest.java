@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class ExpiringCacheTest {
+	private final AtomicLong now = new AtomicLong();
+
+	@Test
+	public void hitAfterPut() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(10, 60, TimeUnit.SECONDS, now::get);
+		assertNull(cache.get("a"));
+		cache.put("a", "value");
+		assertEquals("value", cache.get("a"));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void entryExpiresAfterTtl() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(10, 60, TimeUnit.SECONDS, now::get);
+		cache.put("a", "value");
+		now.addAndGet(TimeUnit.SECONDS.toNanos(61));
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void leastRecentlyUsedEntryEvicted() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(2, 60, TimeUnit.SECONDS, now::get);
+		cache.put("a", "1");
+		cache.put("b", "2");
+		cache.get("a");
+		cache.put("c", "3");
+		assertEquals("1", cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void invalidateRemovesEntry() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(10, 60, TimeUnit.SECONDS, now::get);
+		cache.put("a", "value");
+		cache.invalidate("a");
+		assertNull(cache.get("a"));
+	}
+
+	@Test
+	public void zeroSizeCacheStoresNothing() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(0, 60, TimeUnit.SECONDS, now::get);
+		cache.put("a", "value");
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.aerospike.client.Host;
+
+public class AerospikeClientConfigTest {
+	private static final String LINK = "{\"aerospike\":{\"network\":{\"service_port\":3100,\"info_port\":3103}},"
+			+ "\"instances\":[{\"address\":\"10.0.0.1\"},{\"address\":\"10.0.0.2\"}]}";
+
+	@Test
+	public void everyLinkedNodeIsASeed() {
+		AerospikeLink link = AerospikeLink.parse(LINK);
+
+		assertEquals(3103, link.infoPort);
+		assertFalse(link.isTlsEnabled());
+		assertEquals(Arrays.asList(new Host("10.0.0.1", 3100), new Host("10.0.0.2", 3100)),
+				AerospikeClientConfig.getSeeds(link, null, "localhost", 3000));
+	}
+
+	@Test
+	public void explicitNodeHostWinsOverLinkedNodes() {
+		AerospikeLink link = AerospikeLink.parse(LINK);
+
+		assertEquals(Arrays.asList(new Host("10.0.0.9", 3100)),
+				AerospikeClientConfig.getSeeds(link, "10.0.0.9", "localhost", 3000));
+	}
+
+	@Test
+	public void configuredHostsUsedWithoutLinkedNodes() {
+		AerospikeLink link = AerospikeLink.parse("{\"aerospike\":{\"network\":{\"service_port\":3100}}}");
+
+		List<Host> seeds = AerospikeClientConfig.getSeeds(link, null, "10.0.0.1, 10.0.0.2:4000", 3000);
+
+		assertEquals(Arrays.asList(new Host("10.0.0.1", 3100), new Host("10.0.0.2", 4000)), seeds);
+		assertEquals(Arrays.asList(new Host("localhost", 3000)),
+				AerospikeClientConfig.getSeeds(AerospikeLink.parse(null), null, "localhost", 3000));
+	}
+
+	@Test
+	public void tlsSeedsUseTheLinkedNameAndPort() {
+		AerospikeLink link = AerospikeLink.parse("{\"aerospike\":{\"network\":{\"service_port\":3000,"
+				+ "\"tls\":{\"name\":\"aerospike-tls\",\"service_port\":4333}}},"
+				+ "\"instances\":[{\"address\":\"10.0.0.1\"}]}");
+
+		assertTrue(link.isTlsEnabled());
+		Host seed = AerospikeClientConfig.getSeeds(link, null, "localhost", 3000).get(0);
+		assertEquals("aerospike-tls", seed.tlsName);
+		assertEquals(4333, seed.port);
+	}
+
+	@Test
+	public void unparseableLinkIgnored() {
+		assertEquals(AerospikeLink.EMPTY, AerospikeLink.parse("{not json"));
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.exception;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class AerospikeServiceExceptionResolverTest {
+	private final AerospikeServiceExceptionResolver resolver = new AerospikeServiceExceptionResolver();
+
+	@Test
+	public void unavailableMappedToRetriable503() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertNotNull(resolver.resolveException(new MockHttpServletRequest(), response, null,
+				new AerospikeServiceUnavailableException("not yet", 5)));
+		assertEquals(503, response.getStatus());
+		assertEquals("5", response.getHeader("Retry-After"));
+		assertEquals("{\"description\":\"not yet\"}", response.getContentAsString());
+	}
+
+	@Test
+	public void rateLimitedMappedTo429() {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertNotNull(resolver.resolveException(new MockHttpServletRequest(), response, null,
+				new AerospikeRateLimitedException("slow down", 2)));
+		assertEquals(429, response.getStatus());
+		assertEquals("2", response.getHeader("Retry-After"));
+	}
+
+	@Test
+	public void otherExceptionsLeftToControllers() {
+		assertNull(resolver.resolveException(new MockHttpServletRequest(), new MockHttpServletResponse(), null,
+				new AerospikeServiceException("failed")));
+	}
+}
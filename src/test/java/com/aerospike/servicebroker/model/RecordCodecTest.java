@@ -0,0 +1,139 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+import com.aerospike.servicebroker.fixture.ServiceInstanceBindingFixture;
+import com.aerospike.servicebroker.fixture.ServiceInstanceFixture;
+
+public class RecordCodecTest {
+	private final ServiceInstanceCodec instanceCodec = new ServiceInstanceCodec();
+	private final ServiceInstanceBindingCodec bindingCodec = new ServiceInstanceBindingCodec();
+
+	@Test
+	public void serviceInstanceRoundTrip() {
+		ServiceInstance instance = ServiceInstanceFixture.getServiceInstance();
+		ServiceInstance decoded = instanceCodec.decode(toRecord(instanceCodec.encode(instance)));
+
+		assertEquals(instance.getServiceInstanceId(), decoded.getServiceInstanceId());
+		assertEquals(instance.getServiceDefinitionId(), decoded.getServiceDefinitionId());
+		assertEquals(instance.getPlanId(), decoded.getPlanId());
+		assertEquals(instance.getOrganizationGuid(), decoded.getOrganizationGuid());
+		assertEquals(instance.getSpaceGuid(), decoded.getSpaceGuid());
+		assertEquals(instance.getDashboardUrl(), decoded.getDashboardUrl());
+		assertEquals(instance.getNamespace(), decoded.getNamespace());
+	}
+
+	@Test
+	public void serviceInstanceNullFieldsEncodedAsNullBins() {
+		ServiceInstance instance = new ServiceInstance("id", null, "plan", null, null, null, "test");
+		ServiceInstance decoded = instanceCodec.decode(toRecord(instanceCodec.encode(instance)));
+
+		assertEquals("id", decoded.getServiceInstanceId());
+		assertNull(decoded.getServiceDefinitionId());
+		assertNull(decoded.getDashboardUrl());
+	}
+
+	@Test
+	public void legacyServiceInstanceDecoded() {
+		ServiceInstance instance = ServiceInstanceFixture.getServiceInstance();
+		Record record = new Record(Collections.singletonMap(ServiceInstanceCodec.LEGACY_BIN, (Object) instance), 1, 0);
+
+		assertEquals(instance, instanceCodec.decode(record));
+	}
+
+	@Test
+	public void bindingRoundTripConvertsArraysToLists() {
+		Map<String, Object> credentials = new HashMap<String, Object>();
+		credentials.put("user", "u1");
+		credentials.put("hosts", new String[] {"10.0.0.1:3000", "10.0.0.2:3000"});
+		ServiceInstanceBinding binding = new ServiceInstanceBinding("binding-id", "service-instance-id",
+				credentials, null, "app-guid").withQuotas(100, 50);
+
+		ServiceInstanceBinding decoded = bindingCodec.decode(toRecord(bindingCodec.encode(binding)));
+
+		assertEquals("binding-id", decoded.getId());
+		assertEquals("service-instance-id", decoded.getServiceInstanceId());
+		assertEquals("app-guid", decoded.getAppGuid());
+		assertEquals("u1", decoded.getCredentials().get("user"));
+		assertEquals(100, decoded.getReadQuota());
+		assertEquals(50, decoded.getWriteQuota());
+		List<?> hosts = (List<?>) decoded.getCredentials().get("hosts");
+		assertArrayEquals(new Object[] {"10.0.0.1:3000", "10.0.0.2:3000"}, hosts.toArray());
+	}
+
+	@Test
+	public void bindingQuotaBinsDecodedFromAnyNumber() {
+		Map<String, Object> bins = new HashMap<String, Object>();
+		bins.put(ServiceInstanceBindingCodec.ID_BIN, "binding-id");
+		bins.put(ServiceInstanceBindingCodec.READ_QUOTA_BIN, Integer.valueOf(100));
+		bins.put(ServiceInstanceBindingCodec.WRITE_QUOTA_BIN, Integer.valueOf(50));
+
+		ServiceInstanceBinding decoded = bindingCodec.decode(new Record(bins, 1, 0));
+
+		assertEquals(100, decoded.getReadQuota());
+		assertEquals(50, decoded.getWriteQuota());
+		bins.remove(ServiceInstanceBindingCodec.READ_QUOTA_BIN);
+		assertEquals(0, bindingCodec.decode(new Record(bins, 1, 0)).getReadQuota());
+	}
+
+	@Test
+	public void legacyBindingDecoded() {
+		ServiceInstanceBinding binding = ServiceInstanceBindingFixture.getServiceInstanceBinding();
+		Record record = new Record(
+				Collections.singletonMap(ServiceInstanceBindingCodec.LEGACY_BIN, (Object) binding), 1, 0);
+
+		assertEquals(binding, bindingCodec.decode(record));
+	}
+
+	@Test
+	public void encodeClearsLegacyBin() {
+		Bin[] bins = bindingCodec.encode(ServiceInstanceBindingFixture.getServiceInstanceBinding());
+		Bin legacy = Arrays.stream(bins)
+				.filter(bin -> ServiceInstanceBindingCodec.LEGACY_BIN.equals(bin.name))
+				.findFirst().get();
+		assertNull(legacy.value.getObject());
+	}
+
+	private static Record toRecord(Bin[] bins) {
+		Map<String, Object> map = new HashMap<String, Object>();
+		for (Bin bin : bins) {
+			Object value = bin.value.getObject();
+			// The server returns every integer bin as a long
+			if (value instanceof Integer) {
+				value = ((Integer) value).longValue();
+			}
+			if (value != null) {
+				map.put(bin.name, value);
+			}
+		}
+		return new Record(map, 1, 0);
+	}
+}
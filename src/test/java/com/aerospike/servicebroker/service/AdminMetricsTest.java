@@ -0,0 +1,129 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.ResultCode;
+import com.aerospike.servicebroker.cache.ExpiringCache;
+import com.aerospike.servicebroker.config.AerospikeRetryConfig;
+import com.aerospike.servicebroker.model.ServiceInstance;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class AdminMetricsTest {
+	private SimpleMeterRegistry registry;
+	private AdminMetrics metrics;
+
+	@Before
+	public void setup() {
+		registry = new SimpleMeterRegistry();
+		metrics = new AdminMetrics(registry);
+	}
+
+	@Test
+	public void callsTimedByOperationAndOutcome() {
+		assertEquals("ok", metrics.record("lookupService", () -> "ok"));
+		metrics.record("lookupService", () -> "ok");
+
+		assertEquals(2, registry.get(AdminMetrics.REQUESTS)
+				.tags("operation", "lookupService", "outcome", "success").timer().count());
+		assertNull(registry.find(AdminMetrics.REQUESTS).tags("outcome", "error").timer());
+		assertNull(registry.find(AdminMetrics.ERRORS).counter());
+	}
+
+	@Test
+	public void failuresCountedByResultCode() {
+		try {
+			metrics.record("createUser", () -> {
+				throw new AerospikeException(ResultCode.TIMEOUT);
+			});
+			fail("expected the failure to be passed on");
+		} catch (AerospikeException e) {
+			assertEquals(ResultCode.TIMEOUT, e.getResultCode());
+		}
+		try {
+			metrics.record("createUser", () -> {
+				throw new IllegalStateException("not an Aerospike error");
+			});
+			fail("expected the failure to be passed on");
+		} catch (IllegalStateException e) {
+		}
+
+		assertEquals(1, registry.get(AdminMetrics.ERRORS).tags("operation", "createUser",
+				"result_code", String.valueOf(ResultCode.TIMEOUT)).counter().count(), 0);
+		assertEquals(1, registry.get(AdminMetrics.ERRORS).tags("operation", "createUser",
+				"result_code", "none").counter().count(), 0);
+		assertEquals(2, registry.get(AdminMetrics.REQUESTS)
+				.tags("operation", "createUser", "outcome", "error").timer().count());
+	}
+
+	@Test
+	public void asyncCallsTimedUntilComplete() {
+		CompletableFuture<String> call = new CompletableFuture<>();
+		CompletableFuture<String> result = metrics.recordAsync("lookupServiceAsync", () -> call);
+		assertNull(registry.find(AdminMetrics.REQUESTS).timer());
+
+		call.completeExceptionally(new AerospikeException(ResultCode.KEY_NOT_FOUND_ERROR));
+
+		assertTrue(result.isCompletedExceptionally());
+		assertEquals(1, registry.get(AdminMetrics.ERRORS).tags("operation", "lookupServiceAsync",
+				"result_code", String.valueOf(ResultCode.KEY_NOT_FOUND_ERROR)).counter().count(), 0);
+		assertEquals(1, registry.get(AdminMetrics.REQUESTS)
+				.tags("operation", "lookupServiceAsync", "outcome", "error").timer().count());
+	}
+
+	@Test
+	public void binderRegistersAdminServiceGauges() {
+		AerospikeAdminService adminService = mock(AerospikeAdminService.class);
+		when(adminService.getServiceCount()).thenReturn(3L);
+		when(adminService.getServiceBindingCount()).thenReturn(-1L);
+		ExpiringCache<String, AdminRecord<ServiceInstance>> serviceCache = new ExpiringCache<>(10, 1, TimeUnit.MINUTES);
+		serviceCache.get("missing");
+		when(adminService.getServiceCache()).thenReturn(serviceCache);
+		when(adminService.getServiceBindingCache()).thenReturn(new ExpiringCache<>(10, 1, TimeUnit.MINUTES));
+		when(adminService.getRetryExecutor()).thenReturn(new RetryExecutor(new AerospikeRetryConfig(1, 0, 0)));
+		AdminMetricsBinder binder = new AdminMetricsBinder();
+		ReflectionTestUtils.setField(binder, "adminService", adminService);
+
+		binder.bindTo(registry);
+
+		assertEquals(3, registry.get("aerospike.admin.instances").gauge().value(), 0);
+		assertTrue(Double.isNaN(registry.get("aerospike.admin.bindings").gauge().value()));
+		assertEquals(1, registry.get("aerospike.admin.cache.misses").tags("cache", "service")
+				.functionCounter().count(), 0);
+		assertEquals(0, registry.get("aerospike.admin.cache.size").tags("cache", "binding").gauge().value(), 0);
+		for (RetryExecutor.Outcome outcome : RetryExecutor.Outcome.values()) {
+			String tag = outcome.name().toLowerCase();
+			registry.get("aerospike.admin.security.commands").tags("outcome", tag).functionTimer();
+			registry.get("aerospike.admin.security.attempts").tags("outcome", tag).functionCounter();
+		}
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceBindingExistsException;
+
+import com.aerospike.client.Host;
+import com.aerospike.servicebroker.config.AerospikeQuotaConfig;
+import com.aerospike.servicebroker.fixture.ServiceInstanceFixture;
+import com.aerospike.servicebroker.model.ServiceInstance;
+import com.aerospike.servicebroker.model.ServiceInstanceBinding;
+
+public class AdminStateTransferTest {
+	private AerospikeAdminService adminService;
+	private AdminStateTransfer transfer;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		adminService = mock(AerospikeAdminService.class);
+		doAnswer(invocation -> {
+			((Consumer<ServiceInstance>) invocation.getArguments()[0])
+					.accept(ServiceInstanceFixture.getServiceInstance());
+			return null;
+		}).when(adminService).scanServices(any(Consumer.class));
+		doAnswer(invocation -> {
+			Consumer<ServiceInstanceBinding> consumer = (Consumer<ServiceInstanceBinding>) invocation.getArguments()[0];
+			for (int i = 0; i < 3; i++) {
+				consumer.accept(binding("binding-" + i));
+			}
+			return null;
+		}).when(adminService).scanServiceBindings(any(Consumer.class));
+
+		when(adminService.getSeeds())
+				.thenReturn(Arrays.asList(new Host("10.1.0.1", 3100), new Host("10.1.0.2", 3100)));
+		when(adminService.getBindingRoleName(any(ServiceInstanceBinding.class)))
+				.thenAnswer(invocation -> ((ServiceInstanceBinding) invocation.getArguments()[0]).getRoleName());
+
+		transfer = new AdminStateTransfer(2);
+		transfer.adminService = adminService;
+		transfer.quotaConfig = new AerospikeQuotaConfig(0, 0, "", 20, 0);
+	}
+
+	@Test
+	public void exportedRecordsImportedOntoTargetCluster() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		assertEquals(4, transfer.exportTo(out));
+
+		List<ServiceInstance> instances = new ArrayList<>();
+		List<ServiceInstanceBinding> bindings = new ArrayList<>();
+		when(adminService.createServiceAsync(any(ServiceInstance.class))).thenAnswer(invocation -> {
+			instances.add((ServiceInstance) invocation.getArguments()[0]);
+			return CompletableFuture.completedFuture(null);
+		});
+		when(adminService.createServiceBindingAsync(any(ServiceInstanceBinding.class))).thenAnswer(invocation -> {
+			bindings.add((ServiceInstanceBinding) invocation.getArguments()[0]);
+			return CompletableFuture.completedFuture(null);
+		});
+
+		assertEquals(4, transfer.importFrom(new ByteArrayInputStream(out.toByteArray())));
+
+		ServiceInstance instance = instances.get(0);
+		assertEquals("service-instance-id", instance.getServiceInstanceId());
+		assertEquals("org-guid", instance.getOrganizationGuid());
+		assertEquals("test", instance.getNamespace());
+		assertEquals(3, bindings.size());
+		ServiceInstanceBinding binding = bindings.get(2);
+		assertEquals("binding-2", binding.getId());
+		assertEquals("instance", binding.getServiceInstanceId());
+		assertEquals("u1", binding.getCredentials().get("user"));
+		assertEquals("rbinding2", binding.getRoleName());
+		assertEquals(100, binding.getReadQuota());
+		// Pointed at the target cluster, with a user of its own there
+		assertEquals("10.1.0.1", binding.getCredentials().get("hostname"));
+		assertEquals(3100, ((Number) binding.getCredentials().get("port")).intValue());
+		assertArrayEquals(new String[] {"10.1.0.1 3100", "10.1.0.2 3100"},
+				(String[]) binding.getCredentials().get("hosts"));
+		assertFalse(binding.getCredentials().containsKey("cluster_name"));
+		verify(adminService, times(3)).createBindingUser(any(ServiceInstanceBinding.class));
+		verify(adminService).setRoleQuotas("rbinding2", 100, 0);
+	}
+
+	@Test
+	public void existingRecordsSkipped() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		transfer.exportTo(out);
+		when(adminService.createServiceAsync(any(ServiceInstance.class)))
+				.thenReturn(CompletableFuture.completedFuture(null));
+		CompletableFuture<Void> exists = new CompletableFuture<>();
+		exists.completeExceptionally(new ServiceInstanceBindingExistsException("instance", "binding"));
+		when(adminService.createServiceBindingAsync(any(ServiceInstanceBinding.class))).thenReturn(exists);
+
+		assertEquals(1, transfer.importFrom(new ByteArrayInputStream(out.toByteArray())));
+	}
+
+	private static ServiceInstanceBinding binding(String id) {
+		Map<String, Object> credentials = new HashMap<>();
+		credentials.put("user", "u1");
+		credentials.put("port", 3000);
+		credentials.put("cluster_name", "source");
+		credentials.put("hosts", new String[] {"10.0.0.1:3000"});
+		return new ServiceInstanceBinding(id, "instance", credentials, null, "app", "r" + id.replace("-", ""))
+				.withQuotas(100, 0);
+	}
+
+	@Test
+	public void transferRequestedByEitherOption() {
+		assertTrue(AdminStateTransfer.isRequested(new String[] { "--export-state=state.ndjson.gz" }));
+		assertTrue(AdminStateTransfer.isRequested(new String[] { "--debug", "--import-state=state.ndjson.gz" }));
+		assertFalse(AdminStateTransfer.isRequested(new String[] { "--server.port=8080" }));
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.aerospike.servicebroker.config.AerospikeAdmissionConfig;
+import com.aerospike.servicebroker.exception.AerospikeRateLimitedException;
+import com.aerospike.servicebroker.exception.AerospikeServiceUnavailableException;
+
+public class AdmissionControllerTest {
+	private final AtomicLong now = new AtomicLong();
+
+	@Test
+	public void organizationsHaveSeparateBuckets() {
+		AdmissionController admission = new AdmissionController(new AerospikeAdmissionConfig(1, 2, 0, 0), now::get);
+		admission.admit("busy");
+		admission.admit("busy");
+		try {
+			admission.admit("busy");
+			fail("expected rate limit");
+		} catch (AerospikeRateLimitedException e) {
+			assertEquals(1, e.getRetryAfterSeconds());
+		}
+		admission.admit("quiet");
+
+		now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		admission.admit("busy");
+	}
+
+	@Test
+	public void securityCommandsAreCapped() throws InterruptedException {
+		AdmissionController admission = new AdmissionController(new AerospikeAdmissionConfig(0, 0, 1, 10), now::get);
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Thread holder = new Thread(() -> admission.withSecurityPermit(() -> {
+			running.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+		holder.start();
+		running.await();
+		try {
+			admission.withSecurityPermit(() -> fail("ran without a permit"));
+			fail("expected rejection");
+		} catch (AerospikeServiceUnavailableException e) {
+			assertEquals(1, e.getRetryAfterSeconds());
+		} finally {
+			release.countDown();
+			holder.join();
+		}
+		assertEquals("ran", admission.withSecurityPermit(() -> "ran"));
+	}
+}
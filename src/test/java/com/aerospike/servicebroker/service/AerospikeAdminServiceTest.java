@@ -0,0 +1,314 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceExistsException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.IAerospikeClient;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.ScanCallback;
+import com.aerospike.client.async.EventLoop;
+import com.aerospike.client.async.EventLoops;
+import com.aerospike.client.cluster.Node;
+import com.aerospike.client.listener.RecordListener;
+import com.aerospike.client.policy.BatchPolicy;
+import com.aerospike.client.policy.GenerationPolicy;
+import com.aerospike.client.policy.Policy;
+import com.aerospike.client.policy.RecordExistsAction;
+import com.aerospike.client.policy.ScanPolicy;
+import com.aerospike.client.policy.WritePolicy;
+import com.aerospike.servicebroker.config.AerospikeCacheConfig;
+import com.aerospike.servicebroker.config.AerospikeClientConfig;
+import com.aerospike.servicebroker.config.AerospikePolicyConfig;
+import com.aerospike.servicebroker.config.AerospikeRetryConfig;
+import com.aerospike.servicebroker.exception.AerospikeServiceException;
+import com.aerospike.servicebroker.exception.AerospikeServiceUnavailableException;
+import com.aerospike.servicebroker.model.ServiceInstance;
+import com.aerospike.servicebroker.model.ServiceInstanceBinding;
+import com.aerospike.servicebroker.model.ServiceInstanceBindingCodec;
+import com.aerospike.servicebroker.model.ServiceInstanceCodec;
+
+public class AerospikeAdminServiceTest {
+	private final ServiceInstanceCodec codec = new ServiceInstanceCodec();
+	private final ServiceInstanceBindingCodec bindingCodec = new ServiceInstanceBindingCodec();
+
+	private IAerospikeClient client;
+	private AerospikeAdminService adminService;
+
+	@Before
+	public void setup() {
+		client = mock(IAerospikeClient.class);
+		AerospikePolicyConfig policies = new AerospikePolicyConfig(1000, 50, 1, 55, 1000, 500, 1500, 2, 1000, 3000,
+				1, 20, 1000, 3000, 0, 100, 2, 1);
+		AerospikeClientConfig config = new AerospikeClientConfig("localhost", 3000, "community", "cf_admin",
+				"user", "password", "none", "none", "aerospike", null, null, false, policies);
+		adminService = new AerospikeAdminService(config, new AerospikeCacheConfig(0, 60),
+				new AerospikeRetryConfig(1, 1, 1), client);
+	}
+
+	@Test
+	public void batchGetIsChunkedAndSkipsMissing() {
+		when(client.get(any(BatchPolicy.class), any(Key[].class))).thenAnswer(invocation -> {
+			Key[] keys = (Key[]) invocation.getArguments()[1];
+			Record[] records = new Record[keys.length];
+			for (int i = 0; i < keys.length; i++) {
+				String id = (String) keys[i].userKey.getObject();
+				records[i] = id.startsWith("missing") ? null : toRecord(instance(id));
+			}
+			return records;
+		});
+
+		Map<String, AdminRecord<ServiceInstance>> result = adminService.getServices(
+				Arrays.asList("a", "b", "missing", "c", "a"));
+
+		verify(client, times(2)).get(any(BatchPolicy.class), any(Key[].class));
+		assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<>(result.keySet()));
+		assertEquals("b", result.get("b").getValue().getServiceInstanceId());
+	}
+
+	@Test
+	public void scanVisitsEachNode() {
+		Node[] nodes = {mock(Node.class), mock(Node.class)};
+		when(client.getNodes()).thenReturn(nodes);
+		doAnswer(invocation -> {
+			Node node = (Node) invocation.getArguments()[1];
+			ScanCallback callback = (ScanCallback) invocation.getArguments()[4];
+			callback.scanCallback(null, toRecord(instance(node == nodes[0] ? "a" : "b")));
+			return null;
+		}).when(client).scanNode(any(ScanPolicy.class), any(Node.class), eq("cf_admin"), eq("service"),
+				any(ScanCallback.class));
+
+		List<String> ids = new ArrayList<>();
+		adminService.scanServices(instance -> ids.add(instance.getServiceInstanceId()));
+
+		assertEquals(Arrays.asList("a", "b"), ids);
+	}
+
+	@Test
+	public void bulkRequestsAreBounded() {
+		Node[] nodes = {mock(Node.class)};
+		when(client.getNodes()).thenReturn(nodes);
+		List<Boolean> nestedRejected = new ArrayList<>();
+		doAnswer(invocation -> {
+			try {
+				adminService.getServices(Arrays.asList("a"));
+				nestedRejected.add(false);
+			} catch (RuntimeException e) {
+				nestedRejected.add(true);
+			}
+			return null;
+		}).when(client).scanNode(any(ScanPolicy.class), any(Node.class), eq("cf_admin"), eq("service"),
+				any(ScanCallback.class));
+
+		adminService.scanServices(instance -> {});
+
+		assertTrue(nestedRejected.get(0));
+		// The permit is released once the scan finishes
+		when(client.get(any(BatchPolicy.class), any(Key[].class))).thenReturn(new Record[1]);
+		assertFalse(adminService.getServices(Arrays.asList("a")).containsKey("a"));
+	}
+
+	@Test
+	public void createOfExistingInstanceIsRejected() {
+		when(client.operate(any(WritePolicy.class), any(Key.class), Matchers.<Operation>anyVararg()))
+				.thenThrow(new AerospikeException(ResultCode.KEY_EXISTS_ERROR));
+
+		try {
+			adminService.createService(instance("a"));
+			fail("expected ServiceInstanceExistsException");
+		} catch (ServiceInstanceExistsException e) {
+			ArgumentCaptor<WritePolicy> policy = ArgumentCaptor.forClass(WritePolicy.class);
+			verify(client).operate(policy.capture(), any(Key.class), Matchers.<Operation>anyVararg());
+			assertEquals(RecordExistsAction.CREATE_ONLY, policy.getValue().recordExistsAction);
+			assertEquals(0, policy.getValue().maxRetries);
+		}
+	}
+
+	@Test
+	public void updateWithStaleGenerationIsRejected() {
+		when(client.operate(any(WritePolicy.class), any(Key.class), Matchers.<Operation>anyVararg()))
+				.thenThrow(new AerospikeException(ResultCode.GENERATION_ERROR));
+
+		try {
+			adminService.updateService(instance("a"), 4);
+			fail("expected AerospikeServiceUnavailableException");
+		} catch (AerospikeServiceUnavailableException e) {
+			ArgumentCaptor<WritePolicy> policy = ArgumentCaptor.forClass(WritePolicy.class);
+			verify(client).operate(policy.capture(), any(Key.class), Matchers.<Operation>anyVararg());
+			assertEquals(GenerationPolicy.EXPECT_GEN_EQUAL, policy.getValue().generationPolicy);
+			assertEquals(4, policy.getValue().generation);
+		}
+	}
+
+	@Test
+	public void lookupFailureNotTakenForMissingRecord() {
+		when(client.get(any(Policy.class), any(Key.class)))
+				.thenThrow(new AerospikeException(ResultCode.TIMEOUT));
+
+		try {
+			adminService.lookupService("a");
+			fail("expected the timeout to surface");
+		} catch (AerospikeServiceException e) {
+			// Not ServiceInstanceDoesNotExist, so a create does not go ahead
+		}
+		try {
+			adminService.lookupServiceBinding("b");
+			fail("expected the timeout to surface");
+		} catch (AerospikeServiceException e) {
+			// Not ServiceInstanceBindingDoesNotExist either
+		}
+	}
+
+	@Test
+	public void lookupMissingRecordIsEmpty() {
+		when(client.get(any(Policy.class), any(Key.class))).thenReturn(null);
+
+		assertFalse(adminService.lookupService("a").isPresent());
+		assertFalse(adminService.lookupServiceBinding("b").isPresent());
+	}
+
+	@Test
+	public void lookupFoundRecordCarriesGeneration() {
+		Map<String, Object> credentials = new HashMap<>();
+		credentials.put("username", "u-b");
+		when(client.get(any(Policy.class), eq(new Key("cf_admin", "service", "a"))))
+				.thenReturn(toRecord(codec.encode(instance("a")), 3));
+		when(client.get(any(Policy.class), eq(new Key("cf_admin", "binding", "b"))))
+				.thenReturn(toRecord(bindingCodec.encode(
+						new ServiceInstanceBinding("b", "a", credentials, null, "app", "r-b")), 5));
+
+		AdminRecord<ServiceInstance> service = adminService.lookupService("a").get();
+		assertEquals("a", service.getValue().getServiceInstanceId());
+		assertEquals("org", service.getValue().getOrganizationGuid());
+		assertEquals(3, service.getGeneration());
+		AdminRecord<ServiceInstanceBinding> binding = adminService.lookupServiceBinding("b").get();
+		assertEquals("b", binding.getValue().getId());
+		assertEquals("a", binding.getValue().getServiceInstanceId());
+		assertEquals("u-b", binding.getValue().getCredentials().get("username"));
+		assertEquals(5, binding.getGeneration());
+	}
+
+	@Test
+	public void lookupKeyNotFoundIsEmpty() {
+		when(client.get(any(Policy.class), any(Key.class)))
+				.thenThrow(new AerospikeException(ResultCode.KEY_NOT_FOUND_ERROR));
+
+		assertFalse(adminService.lookupService("a").isPresent());
+		assertFalse(adminService.lookupServiceBinding("b").isPresent());
+	}
+
+	@Test
+	public void eventLoopLookupCompletesFromListener() {
+		ReflectionTestUtils.setField(adminService, "eventLoops", mock(EventLoops.class));
+		ArgumentCaptor<RecordListener> listener = ArgumentCaptor.forClass(RecordListener.class);
+
+		CompletableFuture<Optional<AdminRecord<ServiceInstance>>> lookup = adminService.lookupServiceAsync("a");
+
+		verify(client).get(any(EventLoop.class), listener.capture(), any(Policy.class), any(Key.class));
+		assertFalse(lookup.isDone());
+		Record record = toRecord(instance("a"));
+		listener.getValue().onSuccess(null, new Record(record.bins, 7, 0));
+		assertEquals("a", lookup.join().get().getValue().getServiceInstanceId());
+		assertEquals(7, lookup.join().get().getGeneration());
+	}
+
+	@Test
+	public void eventLoopLookupFailurePassedOn() {
+		ReflectionTestUtils.setField(adminService, "eventLoops", mock(EventLoops.class));
+		ArgumentCaptor<RecordListener> listener = ArgumentCaptor.forClass(RecordListener.class);
+
+		CompletableFuture<Optional<AdminRecord<ServiceInstance>>> missing = adminService.lookupServiceAsync("a");
+		CompletableFuture<Optional<AdminRecord<ServiceInstance>>> failed = adminService.lookupServiceAsync("b");
+
+		verify(client, times(2)).get(any(EventLoop.class), listener.capture(), any(Policy.class), any(Key.class));
+		listener.getAllValues().get(0).onFailure(new AerospikeException(ResultCode.KEY_NOT_FOUND_ERROR));
+		listener.getAllValues().get(1).onFailure(new AerospikeException(ResultCode.TIMEOUT));
+		assertFalse(missing.join().isPresent());
+		try {
+			AerospikeAdminService.await(failed);
+			fail("expected the timeout to surface");
+		} catch (AerospikeServiceException e) {
+			// Reported as a failure, not as a missing instance
+		}
+	}
+
+	@Test
+	public void eventLoopCreateOfExistingInstanceRejected() {
+		ReflectionTestUtils.setField(adminService, "eventLoops", mock(EventLoops.class));
+		ArgumentCaptor<RecordListener> listener = ArgumentCaptor.forClass(RecordListener.class);
+		ArgumentCaptor<WritePolicy> policy = ArgumentCaptor.forClass(WritePolicy.class);
+
+		CompletableFuture<Void> create = adminService.createServiceAsync(instance("a"));
+
+		verify(client).operate(any(EventLoop.class), listener.capture(), policy.capture(), any(Key.class),
+				Matchers.<Operation>anyVararg());
+		assertEquals(RecordExistsAction.CREATE_ONLY, policy.getValue().recordExistsAction);
+		listener.getValue().onFailure(new AerospikeException(ResultCode.KEY_EXISTS_ERROR));
+		try {
+			AerospikeAdminService.await(create);
+			fail("expected the conflict");
+		} catch (ServiceInstanceExistsException e) {
+			// The listener's result code is translated as on the synchronous path
+		}
+	}
+
+	private static ServiceInstance instance(String id) {
+		return new ServiceInstance(id, "definition", "plan", "org", "space", null, "test");
+	}
+
+	private Record toRecord(ServiceInstance instance) {
+		return toRecord(codec.encode(instance), 1);
+	}
+
+	private static Record toRecord(Bin[] encoded, int generation) {
+		Map<String, Object> bins = new HashMap<>();
+		for (Bin bin : encoded) {
+			bins.put(bin.name, bin.value.getObject());
+		}
+		return new Record(bins, generation, 0);
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.model.Catalog;
+
+import com.aerospike.servicebroker.config.AerospikeCatalogConfig;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class AerospikeCatalogServiceTest {
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final Map<String, Map<String, String>> namespaces = new HashMap<>();
+
+	private AerospikeAdminService adminService;
+	private AerospikeCatalogService service;
+
+	@Before
+	public void setup() {
+		namespaces.put("test", namespace("memory", "4G", "2"));
+
+		adminService = mock(AerospikeAdminService.class);
+		when(adminService.getNamespaceInfo()).thenReturn(namespaces);
+
+		service = new AerospikeCatalogService(new AerospikeCatalogConfig("service-id", "aerospike", "description"));
+		service.adminService = adminService;
+	}
+
+	@Test
+	public void catalogReusedWhileNamespacesUnchanged() {
+		assertSame(service.getCatalog(), service.getCatalog());
+		assertSame(service.getServiceDefinition("service-id"), service.getCatalog().getServiceDefinitions().get(0));
+	}
+
+	@Test
+	public void catalogRebuiltWhenNamespacesChange() {
+		Catalog before = service.getCatalog();
+		Map<String, Map<String, String>> changed = new HashMap<>(namespaces);
+		changed.put("other", namespace("device", "8G", "2"));
+		when(adminService.getNamespaceInfo()).thenReturn(changed);
+		service.onNamespaceInfoChanged(new NamespaceInfoChangedEvent(this, changed));
+		Catalog after = service.getCatalog();
+
+		assertNotSame(before, after);
+		assertEquals(2, after.getServiceDefinitions().get(0).getPlans().size());
+	}
+
+	@Test
+	public void serializedCatalogMatchesObjectSerialization() throws Exception {
+		Catalog catalog = service.getCatalog();
+		String expected = mapper.writeValueAsString(new Catalog(catalog.getServiceDefinitions()));
+
+		assertEquals(expected, mapper.writeValueAsString(catalog));
+	}
+
+	@Test
+	public void serializedCatalogWritesPreEncodedJson() throws Exception {
+		Catalog catalog = new AerospikeCatalogService.SerializedCatalog(Collections.emptyList(),
+				new SerializedString("{\"services\":[\"cached\"]}"));
+
+		assertEquals("{\"services\":[\"cached\"]}", mapper.writeValueAsString(catalog));
+	}
+
+	private static Map<String, String> namespace(String storage, String size, String replication) {
+		Map<String, String> info = new HashMap<>();
+		info.put("storage-engine", storage);
+		info.put("memory-size", size);
+		info.put("effective_replication_factor", replication);
+		return info;
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.springframework.cloud.servicebroker.exception.ServiceInstanceBindingExistsException;
+import org.springframework.cloud.servicebroker.model.CreateServiceInstanceBindingRequest;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceBindingRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Host;
+import com.aerospike.client.ResultCode;
+import com.aerospike.servicebroker.config.AerospikeAdmissionConfig;
+import com.aerospike.servicebroker.config.AerospikeClientHintsConfig;
+import com.aerospike.servicebroker.config.AerospikeQuotaConfig;
+import com.aerospike.servicebroker.exception.AerospikeRateLimitedException;
+import com.aerospike.servicebroker.exception.AerospikeServiceUnavailableException;
+import com.aerospike.servicebroker.model.AsyncOperation;
+import com.aerospike.servicebroker.model.ClusterTopology;
+import com.aerospike.servicebroker.model.PooledCredential;
+import com.aerospike.servicebroker.model.ServiceInstance;
+import com.aerospike.servicebroker.model.ServiceInstanceBinding;
+
+public class AerospikeServiceInstanceBindingServiceTest {
+	private AerospikeAdminService adminService;
+	private AsyncOperationService asyncService;
+	private CredentialPool credentialPool;
+	private AerospikeServiceInstanceBindingService service;
+
+	@Before
+	public void setup() {
+		adminService = mock(AerospikeAdminService.class);
+		when(adminService.lookupServiceBindingAsync("binding"))
+				.thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+		when(adminService.lookupServiceAsync("instance")).thenReturn(CompletableFuture.completedFuture(
+				Optional.of(new AdminRecord<ServiceInstance>(new ServiceInstance("instance", "definition", "test",
+						"org", "space", null, "test"), 1))));
+		when(adminService.getSeeds()).thenReturn(Collections.singletonList(new Host("localhost", 3000)));
+		when(adminService.getTopology()).thenReturn(ClusterTopology.EMPTY);
+		asyncService = mock(AsyncOperationService.class);
+		credentialPool = mock(CredentialPool.class);
+		when(credentialPool.claim("test", null)).thenReturn(Optional.empty());
+
+		service = new AerospikeServiceInstanceBindingService();
+		ReflectionTestUtils.setField(service, "adminService", adminService);
+		ReflectionTestUtils.setField(service, "asyncService", asyncService);
+		ReflectionTestUtils.setField(service, "credentialPool", credentialPool);
+		ReflectionTestUtils.setField(service, "quotaConfig", new AerospikeQuotaConfig(100, 0, "", 20, 0));
+		ReflectionTestUtils.setField(service, "clientHints", new AerospikeClientHintsConfig(0, ""));
+		ReflectionTestUtils.setField(service, "admission",
+				new AdmissionController(new AerospikeAdmissionConfig(0, 0, 0, 0)));
+	}
+
+	@Test
+	public void bindCreatesUserBeforeReturningEvenWhenAsync() {
+		when(asyncService.isEnabled()).thenReturn(true);
+
+		bind();
+
+		verify(adminService).createUser(anyString(), anyString(), anyString(), anyString());
+		verify(adminService).setRoleQuotas(anyString(), anyInt(), anyInt());
+		verify(asyncService, never()).submit(anyString(), any(AsyncOperation.Type.class), any(Runnable.class));
+	}
+
+	@Test
+	public void syncBindDropsUserWhenQuotasFail() {
+		when(adminService.setRoleQuotas(anyString(), anyInt(), anyInt()))
+				.thenThrow(new AerospikeException(ResultCode.TIMEOUT));
+
+		try {
+			bind();
+			fail("expected the quota failure");
+		} catch (AerospikeException e) {
+			InOrder order = inOrder(adminService);
+			order.verify(adminService).createUser(anyString(), anyString(), anyString(), anyString());
+			order.verify(adminService).dropBindingUser(any(ServiceInstanceBinding.class));
+			order.verify(adminService).deleteServiceBinding(any(ServiceInstanceBinding.class));
+		}
+	}
+
+	@Test
+	public void nothingClaimedFromPoolWhenCredentialsCannotBeBuilt() {
+		when(adminService.getSeeds()).thenThrow(new AerospikeServiceUnavailableException("No nodes", 5));
+
+		try {
+			bind();
+			fail("expected the seed failure");
+		} catch (AerospikeServiceUnavailableException e) {
+			verify(credentialPool, never()).claim(anyString(), anyString());
+		}
+	}
+
+	@Test
+	public void pooledUserDroppedWhenBindingRecordFails() {
+		when(credentialPool.claim("test", null))
+				.thenReturn(Optional.of(new PooledCredential("test", "pu0", "pr0", "secret")));
+		doThrow(new ServiceInstanceBindingExistsException("instance", "binding")).when(adminService)
+				.createServiceBinding(any(ServiceInstanceBinding.class));
+
+		try {
+			bind();
+			fail("expected the conflict");
+		} catch (ServiceInstanceBindingExistsException e) {
+			verify(adminService).dropBindingUser(any(ServiceInstanceBinding.class));
+		}
+	}
+
+	@Test
+	public void unbindCountsAgainstInstanceOrg() {
+		ServiceInstanceBinding binding = new ServiceInstanceBinding("binding", "instance", null, null, "app");
+		when(adminService.lookupServiceBinding("binding"))
+				.thenReturn(Optional.of(new AdminRecord<ServiceInstanceBinding>(binding, 1)));
+		when(adminService.lookupService("instance")).thenReturn(Optional.of(new AdminRecord<ServiceInstance>(
+				new ServiceInstance("instance", "definition", "test", "org", "space", null, "test"), 1)));
+		ReflectionTestUtils.setField(service, "admission",
+				new AdmissionController(new AerospikeAdmissionConfig(1, 1, 0, 0), () -> 0L));
+
+		bind();
+		try {
+			service.deleteServiceInstanceBinding(new DeleteServiceInstanceBindingRequest("instance", "binding",
+					"definition", "test", null));
+			fail("expected the org to be over its rate");
+		} catch (AerospikeRateLimitedException e) {
+			verify(adminService, never()).dropBindingUser(binding);
+		}
+	}
+
+	private void bind() {
+		service.createServiceInstanceBinding(new CreateServiceInstanceBindingRequest("definition", "test",
+				"app", null, null).withServiceInstanceId("instance").withBindingId("binding"));
+	}
+}
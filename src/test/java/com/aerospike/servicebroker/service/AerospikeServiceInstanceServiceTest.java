@@ -0,0 +1,132 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.springframework.cloud.servicebroker.model.DeleteServiceInstanceRequest;
+import org.springframework.cloud.servicebroker.model.UpdateServiceInstanceRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.aerospike.servicebroker.config.AerospikeAdmissionConfig;
+import com.aerospike.servicebroker.config.AerospikeAsyncConfig;
+import com.aerospike.servicebroker.config.AerospikeDeprovisionConfig;
+import com.aerospike.servicebroker.config.AerospikeSharedStateConfig;
+import com.aerospike.servicebroker.exception.AerospikeRateLimitedException;
+import com.aerospike.servicebroker.exception.AerospikeServiceException;
+import com.aerospike.servicebroker.exception.AerospikeServiceUnavailableException;
+import com.aerospike.servicebroker.model.AsyncOperation;
+import com.aerospike.servicebroker.model.ServiceInstance;
+import com.aerospike.servicebroker.model.ServiceInstanceBinding;
+
+public class AerospikeServiceInstanceServiceTest {
+	private final ServiceInstance instance = new ServiceInstance("instance", "definition", "plan", "org", "space",
+			null, "test");
+	private final ServiceInstanceBinding binding = new ServiceInstanceBinding("binding", "instance", null, null,
+			"app");
+
+	private AerospikeAdminService adminService;
+	private AerospikeServiceInstanceService service;
+
+	@Before
+	public void setup() {
+		adminService = mock(AerospikeAdminService.class);
+		when(adminService.lookupService("instance"))
+				.thenReturn(Optional.of(new AdminRecord<ServiceInstance>(instance, 1)));
+		when(adminService.getServiceBindingsForInstance("instance")).thenReturn(Arrays.asList(binding));
+
+		service = new AerospikeServiceInstanceService();
+		ReflectionTestUtils.setField(service, "adminService", adminService);
+		ReflectionTestUtils.setField(service, "asyncService",
+				new AsyncOperationService(new AerospikeAsyncConfig(false, 0, 0),
+				new AerospikeSharedStateConfig("replica", false, 600, 5000, 30000)));
+		ReflectionTestUtils.setField(service, "admission",
+				new AdmissionController(new AerospikeAdmissionConfig(0, 0, 0, 0)));
+	}
+
+	@Test
+	public void deleteCascadesToBindings() {
+		ReflectionTestUtils.setField(service, "deprovisionConfig", new AerospikeDeprovisionConfig(true));
+
+		service.deleteServiceInstance(new DeleteServiceInstanceRequest("instance", "definition", "plan", null));
+
+		InOrder order = inOrder(adminService);
+		order.verify(adminService).dropBindingUser(binding);
+		order.verify(adminService).deleteServiceBinding(binding);
+		order.verify(adminService).deleteService(instance);
+	}
+
+	@Test
+	public void deleteRejectedWhileBound() {
+		ReflectionTestUtils.setField(service, "deprovisionConfig", new AerospikeDeprovisionConfig(false));
+
+		try {
+			service.deleteServiceInstance(new DeleteServiceInstanceRequest("instance", "definition", "plan", null));
+			fail("expected rejection");
+		} catch (AerospikeServiceException e) {
+			verify(adminService, never()).deleteService(any(ServiceInstance.class));
+		}
+	}
+
+	@Test
+	public void deleteRejectedWhileOperationInProgress() {
+		ReflectionTestUtils.setField(service, "deprovisionConfig", new AerospikeDeprovisionConfig(true));
+		AsyncOperationService asyncService = mock(AsyncOperationService.class);
+		when(asyncService.isEnabled()).thenReturn(true);
+		when(asyncService.isInProgress("instance")).thenReturn(true);
+		ReflectionTestUtils.setField(service, "asyncService", asyncService);
+
+		try {
+			service.deleteServiceInstance(new DeleteServiceInstanceRequest("instance", "definition", "plan", null)
+					.withAsyncAccepted(true));
+			fail("expected the in-progress operation to be reported");
+		} catch (AerospikeServiceUnavailableException e) {
+			verify(asyncService, never()).submit(anyString(), any(AsyncOperation.Type.class), any(Runnable.class));
+			verify(adminService, never()).deleteService(any(ServiceInstance.class));
+		}
+	}
+
+	@Test
+	public void updateAndDeleteCountAgainstInstanceOrg() {
+		ReflectionTestUtils.setField(service, "deprovisionConfig", new AerospikeDeprovisionConfig(true));
+		ReflectionTestUtils.setField(service, "admission",
+				new AdmissionController(new AerospikeAdmissionConfig(1, 1, 0, 0), () -> 0L));
+
+		service.updateServiceInstance(new UpdateServiceInstanceRequest("definition", "plan")
+				.withServiceInstanceId("instance"));
+		try {
+			service.deleteServiceInstance(new DeleteServiceInstanceRequest("instance", "definition", "plan", null));
+			fail("expected the org to be over its rate");
+		} catch (AerospikeRateLimitedException e) {
+			verify(adminService, never()).dropBindingUser(any(ServiceInstanceBinding.class));
+			verify(adminService, never()).deleteService(any(ServiceInstance.class));
+		}
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.servicebroker.model.OperationState;
+
+import com.aerospike.servicebroker.config.AerospikeAsyncConfig;
+import com.aerospike.servicebroker.config.AerospikeSharedStateConfig;
+import com.aerospike.servicebroker.exception.AerospikeServiceUnavailableException;
+import com.aerospike.servicebroker.model.AsyncOperation;
+
+public class AsyncOperationServiceTest {
+	private static final AerospikeSharedStateConfig SHARED_STATE = new AerospikeSharedStateConfig("replica", false,
+			600, 5000, 30000);
+
+	private final List<AsyncOperation> saved = Collections.synchronizedList(new ArrayList<>());
+	private final List<AsyncOperation> finished = Collections.synchronizedList(new ArrayList<>());
+
+	private AsyncOperationService service;
+
+	@Before
+	public void setup() {
+		AerospikeAdminService adminService = mock(AerospikeAdminService.class);
+		doAnswer(invocation -> {
+			saved.add((AsyncOperation) invocation.getArguments()[0]);
+			return saved.size();
+		}).when(adminService).saveOperation(any(AsyncOperation.class));
+		doAnswer(invocation -> {
+			finished.add((AsyncOperation) invocation.getArguments()[0]);
+			return OptionalInt.of((Integer) invocation.getArguments()[1] + 1);
+		}).when(adminService).updateOperation(any(AsyncOperation.class), anyInt());
+
+		service = new AsyncOperationService(new AerospikeAsyncConfig(true, 1, 1), SHARED_STATE);
+		service.adminService = adminService;
+	}
+
+	@After
+	public void teardown() throws InterruptedException {
+		service.close();
+	}
+
+	@Test
+	public void disabledByConfig() {
+		assertFalse(new AsyncOperationService(new AerospikeAsyncConfig(false, 1, 1), SHARED_STATE).isEnabled());
+	}
+
+	@Test
+	public void recordsSuccess() {
+		service.submit("op", AsyncOperation.Type.CREATE_BINDING, () -> {});
+
+		verify(service.adminService, timeout(1000)).updateOperation(any(AsyncOperation.class), eq(1));
+		assertEquals(OperationState.IN_PROGRESS, saved.get(0).getState());
+		assertEquals(OperationState.SUCCEEDED, finished.get(0).getState());
+	}
+
+	@Test
+	public void recordsFailure() {
+		service.submit("op", AsyncOperation.Type.DELETE_BINDING, () -> {
+			throw new IllegalStateException("boom");
+		});
+
+		verify(service.adminService, timeout(1000)).updateOperation(any(AsyncOperation.class), eq(1));
+		assertEquals(OperationState.FAILED, finished.get(0).getState());
+		assertEquals("boom", finished.get(0).getDescription());
+	}
+
+	@Test
+	public void expiredLeaseIsTakenOverAndResumed() {
+		List<String> resumed = Collections.synchronizedList(new ArrayList<>());
+		service.registerResumer(AsyncOperation.Type.DELETE_BINDING, resumed::add);
+		inProgress(new AsyncOperation("expired", AsyncOperation.Type.DELETE_BINDING, OperationState.IN_PROGRESS,
+				null, "other", 500), new AsyncOperation("leased", AsyncOperation.Type.DELETE_BINDING,
+				OperationState.IN_PROGRESS, null, "other", 2000));
+		doReturn(OptionalInt.of(4)).when(service.adminService).updateOperation(any(AsyncOperation.class), eq(3));
+
+		assertEquals(1, service.takeOverExpired(1000));
+
+		verify(service.adminService, timeout(1000)).updateOperation(any(AsyncOperation.class), eq(4));
+		assertEquals(Arrays.asList("expired"), resumed);
+		assertEquals(OperationState.SUCCEEDED, finished.get(0).getState());
+		assertEquals("replica", finished.get(0).getOwner());
+	}
+
+	@Test
+	public void lostTakeOverIsNotResumed() {
+		service.registerResumer(AsyncOperation.Type.DELETE_BINDING, id -> fail("resumed " + id));
+		inProgress(new AsyncOperation("expired", AsyncOperation.Type.DELETE_BINDING, OperationState.IN_PROGRESS,
+				null, "other", 500));
+		doReturn(OptionalInt.empty()).when(service.adminService).updateOperation(any(AsyncOperation.class), eq(3));
+
+		assertEquals(0, service.takeOverExpired(1000));
+	}
+
+	@Test
+	public void rejectsWhenSaturated() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		Runnable blocked = () -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		};
+		try {
+			// One running, one queued
+			service.submit("a", AsyncOperation.Type.DELETE_BINDING, blocked);
+			service.submit("b", AsyncOperation.Type.DELETE_BINDING, blocked);
+			try {
+				service.submit("c", AsyncOperation.Type.DELETE_BINDING, blocked);
+				fail("expected rejection");
+			} catch (AerospikeServiceUnavailableException e) {
+				assertEquals(5, e.getRetryAfterSeconds());
+			}
+			verify(service.adminService).deleteOperation("c");
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@Test
+	public void outcomeNotRecordedAfterLeaseLost() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		doReturn(OptionalInt.empty()).when(service.adminService).updateOperation(any(AsyncOperation.class), eq(1));
+		service.submit("op", AsyncOperation.Type.DELETE_BINDING, () -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+
+		// Taken over by another replica while running
+		service.renewLeases(1000);
+		release.countDown();
+
+		service.close();
+		verify(service.adminService).updateOperation(any(AsyncOperation.class), eq(1));
+		assertEquals(1, saved.size());
+		assertEquals(0, finished.size());
+	}
+
+	@SuppressWarnings("unchecked")
+	private void inProgress(AsyncOperation... operations) {
+		doAnswer(invocation -> {
+			for (AsyncOperation operation : operations) {
+				((Consumer<AdminRecord<AsyncOperation>>) invocation.getArguments()[0])
+						.accept(new AdminRecord<AsyncOperation>(operation, 3));
+			}
+			return null;
+		}).when(service.adminService).queryOperationsInProgress(any(Consumer.class));
+	}
+}
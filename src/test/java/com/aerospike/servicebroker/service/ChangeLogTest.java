@@ -0,0 +1,97 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aerospike.servicebroker.cache.ExpiringCache;
+import com.aerospike.servicebroker.config.AerospikeSharedStateConfig;
+import com.aerospike.servicebroker.model.AdminChange;
+import com.aerospike.servicebroker.model.ServiceInstance;
+import com.aerospike.servicebroker.model.ServiceInstanceBinding;
+
+public class ChangeLogTest {
+	private final List<AdminChange> log = new ArrayList<>();
+	private final ExpiringCache<String, AdminRecord<ServiceInstance>> services =
+			new ExpiringCache<>(10, 60, TimeUnit.SECONDS);
+	private final ExpiringCache<String, AdminRecord<ServiceInstanceBinding>> bindings =
+			new ExpiringCache<>(10, 60, TimeUnit.SECONDS);
+
+	private ChangeLog changeLog;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		AerospikeAdminService adminService = mock(AerospikeAdminService.class);
+		when(adminService.getServiceCache()).thenReturn(services);
+		when(adminService.getServiceBindingCache()).thenReturn(bindings);
+		doAnswer(invocation -> {
+			long since = (Long) invocation.getArguments()[0];
+			for (AdminChange change : log) {
+				if (change.getTimestamp() >= since) {
+					((Consumer<AdminChange>) invocation.getArguments()[1]).accept(change);
+				}
+			}
+			return null;
+		}).when(adminService).queryChanges(anyLong(), any(Consumer.class));
+
+		changeLog = new ChangeLog(new AerospikeSharedStateConfig("self", true, 600, 100, 30000));
+		changeLog.adminService = adminService;
+	}
+
+	@Test
+	public void changesFromOtherReplicasInvalidateCaches() {
+		services.put("instance", new AdminRecord<ServiceInstance>(null, 1));
+		bindings.put("binding", new AdminRecord<ServiceInstanceBinding>(null, 1));
+		bindings.put("own", new AdminRecord<ServiceInstanceBinding>(null, 1));
+		log.add(new AdminChange("c1", AdminChange.Kind.SERVICE, "instance", "other", 1000));
+		log.add(new AdminChange("c2", AdminChange.Kind.BINDING, "binding", "other", 1000));
+		log.add(new AdminChange("c3", AdminChange.Kind.BINDING, "own", "self", 1000));
+
+		assertEquals(2, changeLog.poll(1050));
+
+		assertNull(services.get("instance"));
+		assertNull(bindings.get("binding"));
+		assertNotNull(bindings.get("own"));
+	}
+
+	@Test
+	public void changesSeenOnceWithinSkewWindow() {
+		log.add(new AdminChange("c1", AdminChange.Kind.BINDING, "binding", "other", 1000));
+		assertEquals(1, changeLog.poll(1050));
+
+		// Cached again after the change; a later poll overlapping the change must not drop it
+		bindings.put("binding", new AdminRecord<ServiceInstanceBinding>(null, 2));
+		assertEquals(0, changeLog.poll(1080));
+		assertNotNull(bindings.get("binding"));
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.ResultCode;
+import com.aerospike.servicebroker.config.AerospikeCredentialPoolConfig;
+import com.aerospike.servicebroker.model.PooledCredential;
+
+public class CredentialPoolTest {
+	private final Map<Integer, AdminRecord<PooledCredential>> entries = new HashMap<>();
+
+	private AerospikeAdminService adminService;
+	private CredentialPool pool;
+
+	@Before
+	public void setup() {
+		entries.put(0, entry("pu0", "pr0", 3));
+		entries.put(1, entry("pu1", "pr1", 5));
+
+		adminService = mock(AerospikeAdminService.class);
+		when(adminService.isSecurityEnabled()).thenReturn(true);
+		when(adminService.getPoolEntries("test", 4)).thenReturn(entries);
+		when(adminService.getNamespaceInfo()).thenReturn(Collections.singletonMap("test", Collections.emptyMap()));
+
+		pool = new CredentialPool(new AerospikeCredentialPoolConfig(0, 0, "test:4:3"));
+		pool.adminService = adminService;
+	}
+
+	@Test
+	public void claimMovesOnWhenSlotTakenByAnotherBroker() {
+		when(adminService.claimPoolEntry("test", 0, 3)).thenReturn(false);
+		when(adminService.claimPoolEntry("test", 1, 5)).thenReturn(true);
+
+		PooledCredential credential = pool.claim("test", "users").get();
+
+		assertEquals("pu1", credential.getUserName());
+		verify(adminService).rescopeRole("pr1", "test", "users");
+	}
+
+	@Test
+	public void claimedCredentialDroppedWhenRescopeFails() {
+		when(adminService.claimPoolEntry(eq("test"), anyInt(), anyInt())).thenReturn(true);
+		doThrow(new AerospikeException(ResultCode.TIMEOUT)).when(adminService)
+				.rescopeRole(anyString(), eq("test"), eq("users"));
+
+		assertFalse(pool.claim("test", "users").isPresent());
+		verify(adminService).dropUserByName(anyString());
+		verify(adminService).dropRoleByName(anyString());
+	}
+
+	@Test
+	public void claimEmptyWhenPoolDisabledForPlan() {
+		assertFalse(pool.claim("other", null).isPresent());
+		verify(adminService, never()).claimPoolEntry(anyString(), anyInt(), anyInt());
+	}
+
+	@Test
+	public void refillFillsEmptySlotsBelowLowWater() {
+		assertEquals(2, pool.refill("test"));
+		verify(adminService).createPoolEntry("test", 2);
+		verify(adminService).createPoolEntry("test", 3);
+		verify(adminService, never()).createPoolEntry(eq("test"), eq(0));
+	}
+
+	private static AdminRecord<PooledCredential> entry(String user, String role, int generation) {
+		return new AdminRecord<PooledCredential>(new PooledCredential("test", user, role, "secret"), generation);
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.aerospike.client.Host;
+import com.aerospike.servicebroker.model.ClusterNode;
+import com.aerospike.servicebroker.model.ClusterTopology;
+
+public class NamespaceInfoCollectorTest {
+
+	@Test
+	public void parseSkipsMalformedEntries() {
+		Map<String, String> info = NamespaceInfoCollector.parse("memory-size=1024;bogus;storage-engine=device");
+
+		assertEquals(2, info.size());
+		assertEquals("1024", info.get("memory-size"));
+		assertEquals("device", info.get("storage-engine"));
+	}
+
+	@Test
+	public void memorySizeSummedAcrossNodes() {
+		Map<String, Map<String, String>> merged = NamespaceInfoCollector.merge(Arrays.asList(
+				node("test", "1024", "2"),
+				node("test", "2048", "2")));
+
+		assertEquals("3072", merged.get("test").get("memory-size"));
+		assertEquals("2", merged.get("test").get("effective_replication_factor"));
+	}
+
+	@Test
+	public void lowestReplicationFactorUsedWhenNodesDisagree() {
+		Map<String, Map<String, String>> merged = NamespaceInfoCollector.merge(Arrays.asList(
+				node("test", "1024", "2"),
+				node("test", "1024", "1")));
+
+		assertEquals("1", merged.get("test").get("effective_replication_factor"));
+	}
+
+	@Test
+	public void namespacesFromAllNodesIncluded() {
+		Map<String, Map<String, String>> merged = NamespaceInfoCollector.merge(Arrays.asList(
+				node("test", "1024", "2"),
+				node("other", "1024", "2")));
+
+		assertEquals(2, merged.size());
+	}
+
+	@Test
+	public void clusterNodeReadsRackAndAlternateAddress() {
+		Map<String, String> responses = new HashMap<>();
+		responses.put("service-clear-alt", "203.0.113.7:4000");
+		responses.put("namespace/test", "rack-id=2;memory-size=1024");
+		responses.put("namespace/other", "memory-size=1024");
+
+		ClusterNode node = NamespaceInfoCollector.toClusterNode("BB901", new Host("10.0.0.1", "node1", 4333),
+				responses, Arrays.asList("test", "other"));
+
+		assertEquals("node1", node.getTlsName());
+		assertEquals("203.0.113.7", node.getAlternateHost());
+		assertEquals(4000, node.getAlternatePort());
+		assertEquals(Integer.valueOf(2), node.getRackId("test"));
+		assertNull(node.getRackId("other"));
+		assertTrue(new ClusterTopology("c1", Collections.singletonList(node)).isRackAware("test"));
+		assertFalse(new ClusterTopology("c1", Collections.singletonList(node)).isRackAware("other"));
+	}
+
+	@Test
+	public void clusterNodeWithoutInfoKeepsItsAddress() {
+		ClusterNode node = NamespaceInfoCollector.toClusterNode("BB901", new Host("10.0.0.1", 3000),
+				Collections.<String, String>emptyMap(), Collections.singletonList("test"));
+
+		assertEquals("10.0.0.1", node.getHost());
+		assertNull(node.getAlternateHost());
+		assertNull(node.getRackId("test"));
+	}
+
+	private static Map<String, Map<String, String>> node(String ns, String memorySize, String replication) {
+		Map<String, String> info = new HashMap<>();
+		info.put("storage-engine", "memory");
+		info.put("memory-size", memorySize);
+		info.put("effective_replication_factor", replication);
+		return Collections.singletonMap(ns, info);
+	}
+}
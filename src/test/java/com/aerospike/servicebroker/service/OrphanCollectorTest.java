@@ -0,0 +1,107 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.function.Consumer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import com.aerospike.servicebroker.config.AerospikeOrphanCollectorConfig;
+import com.aerospike.servicebroker.model.ServiceInstanceBinding;
+
+public class OrphanCollectorTest {
+	private static final String BOUND = "8a1b7f4e-6a0c-4b3f-9d55-2a44e1f0c9b1";
+	private static final String ORPHAN = "5f1c2d3e-4b5a-6978-8796-000000000001";
+
+	private AerospikeAdminService adminService;
+	private OrphanCollector collector;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		adminService = mock(AerospikeAdminService.class);
+		when(adminService.getAdminUser()).thenReturn("cf_admin");
+		when(adminService.getUserName(anyString())).thenAnswer(i -> name("u", (String) i.getArguments()[0]));
+		when(adminService.getRoleName(anyString())).thenAnswer(i -> name("r", (String) i.getArguments()[0]));
+		when(adminService.queryUserNames()).thenReturn(Arrays.asList("cf_admin", name("u", BOUND), name("u", ORPHAN)));
+		when(adminService.queryRoleNames()).thenReturn(Arrays.asList("read-write", name("r", BOUND), name("r", ORPHAN)));
+		when(adminService.queryOwnedNames()).thenReturn(new HashSet<>(Arrays.asList(name("u", BOUND),
+				name("r", BOUND), name("u", ORPHAN), name("r", ORPHAN))));
+		doAnswer(invocation -> {
+			((Consumer<ServiceInstanceBinding>) invocation.getArguments()[0])
+					.accept(new ServiceInstanceBinding(BOUND, "instance", null, null, "app"));
+			return null;
+		}).when(adminService).scanServiceBindings(any(Consumer.class));
+
+		collector = new OrphanCollector(new AerospikeOrphanCollectorConfig(true, 10, 0));
+		collector.adminService = adminService;
+		collector.credentialPool = mock(CredentialPool.class);
+		when(collector.credentialPool.getPooledNames()).thenReturn(Collections.emptySet());
+	}
+
+	@Test
+	public void orphansDroppedOnSecondSighting() throws InterruptedException {
+		assertEquals(0, collector.collect());
+		verify(adminService, never()).dropUserByName(anyString());
+
+		assertEquals(2, collector.collect());
+		InOrder order = inOrder(adminService);
+		order.verify(adminService).dropUserByName(name("u", ORPHAN));
+		order.verify(adminService).dropRoleByName(name("r", ORPHAN));
+		verify(adminService, never()).dropUserByName(name("u", BOUND));
+		verify(adminService, never()).dropUserByName("cf_admin");
+	}
+
+	@Test
+	public void candidateThatGainsBindingIsKept() throws InterruptedException {
+		collector.collect();
+		when(adminService.queryUserNames()).thenReturn(Arrays.asList(name("u", BOUND)));
+		when(adminService.queryRoleNames()).thenReturn(Arrays.asList(name("r", BOUND)));
+
+		assertEquals(0, collector.collect());
+		verify(adminService, never()).dropRoleByName(anyString());
+	}
+
+	@Test
+	public void namesOfOtherBrokersNeverDropped() throws InterruptedException {
+		when(adminService.queryOwnedNames()).thenReturn(Collections.singleton(name("u", BOUND)));
+
+		collector.collect();
+		assertEquals(0, collector.collect());
+		verify(adminService, never()).dropUserByName(anyString());
+		verify(adminService, never()).dropRoleByName(anyString());
+	}
+
+	private static String name(String prefix, String id) {
+		return (prefix + id.replaceAll("-", "")).substring(0, 30);
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.aerospike.servicebroker.config.AerospikeQuotaConfig;
+import com.aerospike.servicebroker.model.PlanQuotas;
+import com.aerospike.servicebroker.model.ServiceInstanceBinding;
+
+public class QuotaReconcilerTest {
+	private AerospikeAdminService adminService;
+	private QuotaReconciler reconciler;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		adminService = mock(AerospikeAdminService.class);
+		when(adminService.getNamespaceInfo())
+				.thenReturn(Collections.singletonMap("test", Collections.<String, String>emptyMap()));
+		when(adminService.getBindingRoleName(any(ServiceInstanceBinding.class)))
+				.thenAnswer(i -> "r" + ((ServiceInstanceBinding) i.getArguments()[0]).getId());
+		when(adminService.setRoleQuotas(anyString(), anyInt(), anyInt())).thenReturn(true);
+		doAnswer(invocation -> {
+			Consumer<ServiceInstanceBinding> consumer = (Consumer<ServiceInstanceBinding>) invocation.getArguments()[0];
+			consumer.accept(binding("a", "test").withQuotas(0, 0));
+			consumer.accept(binding("b", "test").withQuotas(200, 0));
+			consumer.accept(binding("c", "other"));
+			return null;
+		}).when(adminService).scanServiceBindings(any(Consumer.class));
+
+		reconciler = new QuotaReconciler(new AerospikeQuotaConfig(0, 0, "test:1000:500", 1, 0));
+		reconciler.adminService = adminService;
+	}
+
+	@Test
+	public void changedPlanPushedToItsBindings() throws InterruptedException {
+		when(adminService.lookupPlanQuotas("test")).thenReturn(Optional.empty());
+
+		assertEquals(2, reconciler.reconcile());
+		verify(adminService).setRoleQuotas("ra", 1000, 500);
+		verify(adminService).setRoleQuotas("rb", 200, 500);
+		verify(adminService, never()).setRoleQuotas(eq("rc"), anyInt(), anyInt());
+		ArgumentCaptor<PlanQuotas> saved = ArgumentCaptor.forClass(PlanQuotas.class);
+		verify(adminService).savePlanQuotas(saved.capture());
+		assertEquals(1000, saved.getValue().getReadQuota());
+		assertEquals(500, saved.getValue().getWriteQuota());
+	}
+
+	@Test
+	public void unchangedPlanLeftAlone() throws InterruptedException {
+		when(adminService.lookupPlanQuotas("test")).thenReturn(Optional.of(new PlanQuotas("test", 1000, 500)));
+
+		assertEquals(0, reconciler.reconcile());
+		verify(adminService, never()).setRoleQuotas(anyString(), anyInt(), anyInt());
+		verify(adminService, never()).savePlanQuotas(any(PlanQuotas.class));
+	}
+
+	@Test
+	public void planRetriedWhenAnUpdateFails() throws InterruptedException {
+		when(adminService.lookupPlanQuotas("test")).thenReturn(Optional.empty());
+		when(adminService.setRoleQuotas("ra", 1000, 500)).thenThrow(new RuntimeException("timeout"));
+
+		assertEquals(0, reconciler.reconcile());
+		verify(adminService, never()).savePlanQuotas(any(PlanQuotas.class));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void noScanOnceQuotasUnsupported() throws InterruptedException {
+		when(adminService.lookupPlanQuotas("test")).thenReturn(Optional.empty());
+		when(adminService.isQuotasUnsupported()).thenReturn(true);
+
+		assertEquals(0, reconciler.reconcile());
+		verify(adminService, never()).scanServiceBindings(any(Consumer.class));
+	}
+
+	private static ServiceInstanceBinding binding(String id, String namespace) {
+		Map<String, Object> credentials = new HashMap<>();
+		credentials.put("namespace", namespace);
+		return new ServiceInstanceBinding(id, "instance", credentials, null, "app");
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.ResultCode;
+import com.aerospike.servicebroker.config.AerospikeRetryConfig;
+
+public class RetryExecutorTest {
+	private final List<Long> sleeps = new ArrayList<>();
+
+	private RetryExecutor retryExecutor;
+
+	@Before
+	public void setup() {
+		retryExecutor = new RetryExecutor(new AerospikeRetryConfig(4, 100, 250), sleeps::add, () -> 0.5);
+	}
+
+	@Test
+	public void alreadyAppliedCountsAsSuccess() {
+		RetryExecutor.Outcome outcome = retryExecutor.execute("createRole", () -> {
+			throw new AerospikeException(ResultCode.ROLE_ALREADY_EXISTS);
+		}, ResultCode.ROLE_ALREADY_EXISTS);
+
+		assertEquals(RetryExecutor.Outcome.ALREADY_APPLIED, outcome);
+		assertTrue(sleeps.isEmpty());
+		assertEquals(1, retryExecutor.getStats(RetryExecutor.Outcome.ALREADY_APPLIED).getAttempts());
+	}
+
+	@Test
+	public void transientErrorsBackOff() {
+		AtomicInteger calls = new AtomicInteger();
+		RetryExecutor.Outcome outcome = retryExecutor.execute("createUser", () -> {
+			if (calls.incrementAndGet() < 4) {
+				throw new AerospikeException(ResultCode.TIMEOUT);
+			}
+		});
+
+		assertEquals(RetryExecutor.Outcome.SUCCEEDED, outcome);
+		// Half of 100, 200 and then the 250 cap
+		assertEquals(3, sleeps.size());
+		assertEquals(50L, (long) sleeps.get(0));
+		assertEquals(100L, (long) sleeps.get(1));
+		assertEquals(125L, (long) sleeps.get(2));
+		assertEquals(4, retryExecutor.getStats(RetryExecutor.Outcome.SUCCEEDED).getAttempts());
+	}
+
+	@Test
+	public void permanentErrorsFailImmediately() {
+		try {
+			retryExecutor.execute("createUser", () -> {
+				throw new AerospikeException(ResultCode.INVALID_PRIVILEGE);
+			});
+			fail("expected failure");
+		} catch (AerospikeException ae) {
+			assertEquals(ResultCode.INVALID_PRIVILEGE, ae.getResultCode());
+		}
+		assertTrue(sleeps.isEmpty());
+		assertEquals(1, retryExecutor.getStats(RetryExecutor.Outcome.FAILED).getCount());
+	}
+
+	@Test
+	public void givesUpAfterMaxAttempts() {
+		AtomicInteger calls = new AtomicInteger();
+		try {
+			retryExecutor.execute("dropUser", () -> {
+				calls.incrementAndGet();
+				throw new AerospikeException(ResultCode.SERVER_NOT_AVAILABLE);
+			});
+			fail("expected failure");
+		} catch (AerospikeException ae) {
+			assertEquals(ResultCode.SERVER_NOT_AVAILABLE, ae.getResultCode());
+		}
+		assertEquals(4, calls.get());
+		assertEquals(4, retryExecutor.getStats(RetryExecutor.Outcome.FAILED).getAttempts());
+	}
+}
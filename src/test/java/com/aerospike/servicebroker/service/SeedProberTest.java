@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.aerospike.client.Host;
+
+public class SeedProberTest {
+	private final SeedProber prober = new SeedProber();
+
+	@After
+	public void close() {
+		prober.close();
+	}
+
+	@Test
+	public void seedsThatDoNotAnswerComeLast() throws IOException {
+		try (ServerSocket up = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			Host live = new Host("127.0.0.1", up.getLocalPort());
+			Host dead = new Host("127.0.0.1", closedPort());
+
+			assertEquals(Arrays.asList(live, dead), prober.probe(Arrays.asList(dead, live), 1000));
+		}
+	}
+
+	@Test
+	public void allSeedsKeptWhenNoneAnswer() throws IOException {
+		List<Host> seeds = Arrays.asList(new Host("127.0.0.1", closedPort()), new Host("127.0.0.1", closedPort()));
+
+		long start = System.nanoTime();
+		assertEquals(seeds, prober.probe(seeds, 1000));
+		assertTrue(System.nanoTime() - start < 2_000_000_000L);
+	}
+
+	private static int closedPort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+			return socket.getLocalPort();
+		}
+	}
+}
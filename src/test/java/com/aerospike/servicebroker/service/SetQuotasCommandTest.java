@@ -0,0 +1,41 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+public class SetQuotasCommandTest {
+
+	@Test
+	public void encodesAdminHeaderAndFields() {
+		byte[] expected = {
+				// Protocol header: version 0, admin message type 2, 41 byte body
+				0, 2, 0, 0, 0, 0, 0, 41,
+				// Admin header: SET_QUOTAS with 3 fields
+				0, 0, 15, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+				// Role
+				0, 0, 0, 3, 11, 'r', '1',
+				// Read quota 1000
+				0, 0, 0, 5, 14, 0, 0, 0x03, (byte) 0xE8,
+				// Write quota 0
+				0, 0, 0, 5, 15, 0, 0, 0, 0
+		};
+		assertArrayEquals(expected, SetQuotasCommand.encode("r1", 1000, 0));
+	}
+}
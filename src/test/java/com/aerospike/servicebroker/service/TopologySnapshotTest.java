@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012-2017 Aerospike, Inc.
+ *
+ * Portions may be licensed to Aerospike, Inc. under one or more contributor
+ * license agreements WHICH ARE COMPATIBLE WITH THE APACHE LICENSE, VERSION 2.0.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.aerospike.servicebroker.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.aerospike.client.Host;
+import com.aerospike.client.cluster.Node;
+
+public class TopologySnapshotTest {
+	private final AtomicInteger builds = new AtomicInteger();
+	private final TopologySnapshot snapshot = new TopologySnapshot(nodes -> {
+		builds.incrementAndGet();
+		Host[] hosts = new Host[nodes.length];
+		for (int i = 0; i < hosts.length; i++) {
+			hosts[i] = new Host("10.0.0." + (i + 1), 3000);
+		}
+		return hosts;
+	});
+
+	@Test
+	public void hostListRebuiltOnlyWhenNodesChange() {
+		Node[] nodes = new Node[3];
+
+		List<Host> first = snapshot.hosts(nodes);
+		assertSame(first, snapshot.hosts(nodes));
+		snapshot.seeds(nodes);
+		assertEquals(1, builds.get());
+
+		assertEquals(2, snapshot.hosts(new Node[2]).size());
+		assertEquals(2, builds.get());
+	}
+
+	@Test
+	public void seedsStartEvenlyAcrossNodes() {
+		Node[] nodes = new Node[3];
+		Map<String, Integer> firstSeeds = new HashMap<>();
+		for (int i = 0; i < 300; i++) {
+			List<Host> seeds = snapshot.seeds(nodes);
+			assertEquals(3, seeds.size());
+			// Rotated, so the remaining seeds still follow the cluster's order
+			List<Host> hosts = snapshot.hosts(nodes);
+			assertEquals(hosts.get((hosts.indexOf(seeds.get(0)) + 1) % 3), seeds.get(1));
+			firstSeeds.merge(seeds.get(0).name, 1, Integer::sum);
+		}
+
+		assertEquals(3, firstSeeds.size());
+		for (int count : firstSeeds.values()) {
+			assertEquals(100, count);
+		}
+	}
+}